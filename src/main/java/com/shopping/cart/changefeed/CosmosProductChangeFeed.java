@@ -0,0 +1,47 @@
+package com.shopping.cart.changefeed;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.shopping.cart.model.Product;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull-model change feed over the products container. The continuation token is
+ * the only lease state and lives in this instance, so every node reads the full
+ * feed independently and no lease container is needed.
+ */
+@Component
+@ConditionalOnProperty(name = "products.change-feed.enabled", havingValue = "true")
+public class CosmosProductChangeFeed implements ProductChangeFeed {
+
+    private final CosmosContainer productContainer;
+    private volatile String continuationToken;
+
+    public CosmosProductChangeFeed(@Qualifier("productContainer") CosmosContainer productContainer) {
+        this.productContainer = productContainer;
+    }
+
+    @Override
+    public List<Product> poll() {
+        CosmosChangeFeedRequestOptions options = continuationToken == null
+                ? CosmosChangeFeedRequestOptions.createForProcessingFromNow(FeedRange.forFullRange())
+                : CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuationToken);
+
+        // The position only moves once every page has been read, so a failed poll is read again in full
+        List<Product> changes = new ArrayList<>();
+        String next = continuationToken;
+        for (FeedResponse<Product> page : productContainer.queryChangeFeed(options, Product.class).iterableByPage()) {
+            changes.addAll(page.getResults());
+            next = page.getContinuationToken();
+        }
+        continuationToken = next;
+        return changes;
+    }
+}
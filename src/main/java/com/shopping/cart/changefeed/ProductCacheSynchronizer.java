@@ -0,0 +1,52 @@
+package com.shopping.cart.changefeed;
+
+import com.shopping.cart.model.Product;
+import com.shopping.cart.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keeps this node's product cache coherent with writes made by other nodes by
+ * replaying the products change feed into {@link ProductService#refresh(Product)}.
+ */
+@Component
+@ConditionalOnProperty(name = "products.change-feed.enabled", havingValue = "true")
+public class ProductCacheSynchronizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheSynchronizer.class);
+
+    private final ProductChangeFeed changeFeed;
+    private final ProductService productService;
+
+    public ProductCacheSynchronizer(ProductChangeFeed changeFeed, ProductService productService) {
+        this.changeFeed = changeFeed;
+        this.productService = productService;
+    }
+
+    @Scheduled(fixedDelayString = "${products.change-feed.poll-interval-millis:1000}")
+    public void synchronize() {
+        List<Product> changes;
+        try {
+            changes = changeFeed.poll();
+        } catch (RuntimeException e) {
+            log.warn("Product change feed poll failed", e);
+            return;
+        }
+        // The feed has already moved past these changes; one failure must not drop the rest
+        for (Product product : changes) {
+            try {
+                productService.refresh(product);
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply change to product {} from the change feed", product.getId(), e);
+            }
+        }
+        if (!changes.isEmpty()) {
+            log.debug("Applied {} product changes from the change feed", changes.size());
+        }
+    }
+}
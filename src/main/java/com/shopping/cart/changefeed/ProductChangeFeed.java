@@ -0,0 +1,14 @@
+package com.shopping.cart.changefeed;
+
+import com.shopping.cart.model.Product;
+
+import java.util.List;
+
+public interface ProductChangeFeed {
+
+    /**
+     * Returns the products created or updated since the previous call. The feed
+     * keeps its own position; the first call starts from "now".
+     */
+    List<Product> poll();
+}
@@ -0,0 +1,37 @@
+package com.shopping.cart.config;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosClient;
+import com.azure.cosmos.CosmosContainer;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exposes SDK-level container handles for the few operations Spring Data Cosmos
+ * does not cover. The client itself still comes from Spring Boot autoconfiguration.
+ */
+@Configuration
+public class CosmosContainerConfig {
+
+    @Bean
+    public CosmosContainer productContainer(CosmosClient cosmosClient,
+                                            @Value("${spring.cloud.azure.cosmos.database}") String database) {
+        return cosmosClient.getDatabase(database).getContainer(Product.CONTAINER_NAME);
+    }
+
+    @Bean
+    public CosmosContainer cartContainer(CosmosClient cosmosClient,
+                                         @Value("${spring.cloud.azure.cosmos.database}") String database) {
+        return cosmosClient.getDatabase(database).getContainer(Cart.CONTAINER_NAME);
+    }
+
+    @Bean
+    public CosmosAsyncContainer asyncProductContainer(CosmosAsyncClient cosmosAsyncClient,
+                                                      @Value("${spring.cloud.azure.cosmos.database}") String database) {
+        return cosmosAsyncClient.getDatabase(database).getContainer(Product.CONTAINER_NAME);
+    }
+}
@@ -0,0 +1,56 @@
+package com.shopping.cart.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs product import batches. With virtual threads enabled every batch gets its
+     * own virtual thread; concurrency is still capped by the importer itself.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService importExecutor(@Value("${products.import.parallelism:8}") int parallelism,
+                                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("product-import-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "product-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs independent store reads a request fans out to. Bounded in threads and
+     * queue; when saturated the submitting thread runs the read itself, so a busy
+     * pool degrades to sequential reads instead of queueing without limit.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService ioExecutor(@Value("${executor.io.threads:64}") int threads,
+                                      @Value("${executor.io.queue-capacity:256}") int queueCapacity,
+                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("io-", 0).factory());
+        }
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "io-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
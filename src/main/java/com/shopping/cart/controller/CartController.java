@@ -1,21 +1,32 @@
 package com.shopping.cart.controller;
 
 import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartBatchResult;
+import com.shopping.cart.model.CartLineRequest;
+import com.shopping.cart.model.Order;
 import com.shopping.cart.service.CartService;
+import com.shopping.cart.service.CheckoutService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/cart")
 @Tag(name = "Shopping Cart", description = "APIs for managing shopping cart")
 public class CartController {
 
     private final CartService cartService;
+    private final CheckoutService checkoutService;
 
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, CheckoutService checkoutService) {
         this.cartService = cartService;
+        this.checkoutService = checkoutService;
     }
 
     @GetMapping("/{userId}")
@@ -29,8 +40,18 @@ public class CartController {
     public ResponseEntity<Cart> addItemToCart(
             @PathVariable String userId,
             @RequestParam String productId,
+            @RequestParam(required = false) String category,
             @RequestParam Integer quantity) {
-        return ResponseEntity.ok(cartService.addItemToCart(userId, productId, quantity));
+        return ResponseEntity.ok(cartService.addItemToCart(userId, productId, category, quantity));
+    }
+
+    @PostMapping("/{userId}/items:batch")
+    @Operation(summary = "Add several items to cart in one write",
+            description = "Lines that cannot be added are reported in errors; the remaining lines are still added.")
+    public ResponseEntity<CartBatchResult> addItemsToCart(
+            @PathVariable String userId,
+            @RequestBody List<CartLineRequest> lines) {
+        return ResponseEntity.ok(cartService.addItemsToCart(userId, lines));
     }
 
     @PutMapping("/{userId}/items/{productId}")
@@ -56,4 +77,11 @@ public class CartController {
         cartService.clearCart(userId);
         return ResponseEntity.noContent().build();
     }
+
+    @PostMapping("/{userId}/checkout")
+    @Operation(summary = "Place an order from the cart",
+            description = "Creates the order and empties the cart atomically. Returns 409 if prices changed or stock ran out.")
+    public ResponseEntity<Order> checkout(@PathVariable String userId) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(checkoutService.checkout(userId));
+    }
 }
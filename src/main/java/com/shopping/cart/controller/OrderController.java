@@ -0,0 +1,38 @@
+package com.shopping.cart.controller;
+
+import com.shopping.cart.model.Order;
+import com.shopping.cart.service.CheckoutService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/orders")
+@Tag(name = "Orders", description = "APIs for reading placed orders")
+public class OrderController {
+
+    private final CheckoutService checkoutService;
+
+    public OrderController(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+    }
+
+    @GetMapping("/{userId}")
+    @Operation(summary = "List a user's orders, newest first")
+    public ResponseEntity<List<Order>> getOrders(@PathVariable String userId) {
+        return ResponseEntity.ok(checkoutService.getOrders(userId));
+    }
+
+    @GetMapping("/{userId}/{orderId}")
+    @Operation(summary = "Get an order")
+    public ResponseEntity<Order> getOrder(@PathVariable String userId, @PathVariable String orderId) {
+        return checkoutService.getOrder(userId, orderId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
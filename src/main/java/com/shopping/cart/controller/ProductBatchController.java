@@ -0,0 +1,50 @@
+package com.shopping.cart.controller;
+
+import com.shopping.cart.model.Product;
+import com.shopping.cart.service.ProductService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Collection-level custom methods ({@code /api/products:verb}); these cannot live
+ * under {@link ProductController}'s {@code /api/products/} prefix.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api")
+@Tag(name = "Product Management", description = "APIs for managing products")
+public class ProductBatchController {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final ProductService productService;
+
+    public ProductBatchController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @PostMapping("/products:batchGet")
+    @Operation(summary = "Get many products by ID",
+            description = "Returns the products that exist, in the order the IDs were given, with their current "
+                    + "stock. The body must be a JSON array of up to 1000 IDs, none of them null.")
+    public ResponseEntity<List<Product>> batchGetProducts(@RequestBody(required = false) List<String> ids) {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must be an array of non-null IDs");
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_SIZE + " IDs per call");
+        }
+        // Sharded products keep no stock of their own; their shards are summed
+        return ResponseEntity.ok(productService.getProductsByIds(ids).values().stream()
+                .map(productService::withCurrentStock)
+                .toList());
+    }
+}
@@ -1,63 +1,239 @@
 package com.shopping.cart.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shopping.cart.model.Product;
+import com.shopping.cart.model.ProductImportReport;
+import com.shopping.cart.service.InventoryService;
+import com.shopping.cart.service.ProductImportService;
 import com.shopping.cart.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/products")
 @Tag(name = "Product Management", description = "APIs for managing products")
 public class ProductController {
 
+    public static final String CONTINUATION_HEADER = "X-Continuation-Token";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int DEFAULT_FILTER_LIMIT = 100;
+    private static final int MAX_STOCK_SHARDS = 100;
+
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final InventoryService inventoryService;
+    private final ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                             ProductImportService productImportService,
+                             InventoryService inventoryService,
+                             ObjectMapper objectMapper) {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.inventoryService = inventoryService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
-    @Operation(summary = "Create a new product")
+    @Operation(summary = "Create a new product",
+            description = "The id and category are required. An id already in use, in any category, returns 409.")
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(productService.createProduct(product));
     }
 
+    @GetMapping(params = {"!pageSize", "!continuationToken"})
+    @Operation(summary = "Get all products",
+            description = "Without paging parameters the whole catalog is returned as one JSON array. It is "
+                    + "streamed page by page, so the server never holds the full list.")
+    public ResponseEntity<StreamingResponseBody> getAllProducts() {
+        StreamingResponseBody body = output -> {
+            try {
+                output.write('[');
+                boolean[] first = {true};
+                productService.forEachPage(EXPORT_PAGE_SIZE, page -> writeJsonElements(page, output, first));
+                output.write(']');
+                output.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Matches whenever pageSize or continuationToken is given; the mapping above is the more specific one otherwise
     @GetMapping
-    @Operation(summary = "Get all products")
-    public ResponseEntity<List<Product>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    @Operation(summary = "Get a page of products",
+            description = "Returns up to pageSize products. When more are available the token for the next page "
+                    + "is returned in the " + CONTINUATION_HEADER + " header; pass it back as continuationToken.")
+    public ResponseEntity<List<Product>> getProductsPage(
+            @RequestParam(defaultValue = "100") int pageSize,
+            @RequestParam(required = false) String continuationToken) {
+        Slice<Product> page = productService.getProductsPage(
+                Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE)), continuationToken);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String next = ProductService.continuationOf(page);
+        if (next != null) {
+            response.header(CONTINUATION_HEADER, next);
+        }
+        return response.body(page.getContent());
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export the full catalog as newline-delimited JSON")
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = output -> {
+            try {
+                productService.forEachPage(EXPORT_PAGE_SIZE, page -> writeNdjson(page, output));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @Operation(summary = "Bulk import products from newline-delimited JSON or CSV",
+            description = "CSV input needs a header row naming the columns (id, category, name, description, price, "
+                    + "stockQuantity). Existing products with the same id get the row's name, description and price; "
+                    + "stockQuantity only applies to new products. Invalid or failed rows "
+                    + "are reported individually and do not stop the import.")
+    public ResponseEntity<ProductImportReport> importProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+        ProductImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? ProductImportService.Format.NDJSON
+                : ProductImportService.Format.CSV;
+        return ResponseEntity.ok(productImportService.importProducts(body, format));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search products by name and description",
+            description = "Every term must match; the last term also matches as a prefix unless the query ends with a space.")
+    public ResponseEntity<List<Product>> searchProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(productService.searchProducts(q, Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS))));
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
     public ResponseEntity<Product> getProductById(@PathVariable String id) {
         return productService.getProductById(id)
+                .map(productService::withCurrentStock)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/category/{category}")
-    @Operation(summary = "Get products by category")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
-        return ResponseEntity.ok(productService.getProductsByCategory(category));
+    @Operation(summary = "Get products by category",
+            description = "With any of minPrice, maxPrice, inStock, offset or limit the result is filtered, "
+                    + "ordered by price and paged; otherwise all products in the category are returned.")
+    public ResponseEntity<List<Product>> getProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+        if (minPrice == null && maxPrice == null && inStock == null && offset == null && limit == null) {
+            return ResponseEntity.ok(productService.getProductsByCategory(category));
+        }
+        return ResponseEntity.ok(productService.filterProductsByCategory(
+                category,
+                minPrice,
+                maxPrice,
+                Boolean.TRUE.equals(inStock),
+                offset != null ? Math.max(offset, 0) : 0,
+                limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_FILTER_LIMIT));
     }
 
     @PutMapping("/{id}")
-    @Operation(summary = "Update a product")
+    @Operation(summary = "Update a product",
+            description = "Replaces name, description and price. The stock of an existing product is left as is; "
+                    + "change it with POST /api/products/{id}/stock. The category is required and cannot be changed "
+                    + "(409); a product changes category by being deleted and created again.")
     public ResponseEntity<Product> updateProduct(@PathVariable String id, @RequestBody Product product) {
         return ResponseEntity.ok(productService.updateProduct(id, product));
     }
 
+    @PostMapping("/{id}/stock")
+    @Operation(summary = "Adjust a product's stock",
+            description = "Adds delta units to the available stock, or removes them when negative. Units held by "
+                    + "carts are not affected. Removing more than is available returns 409.")
+    public ResponseEntity<Product> adjustStock(@PathVariable String id, @RequestParam int delta) {
+        if (delta == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "delta must not be zero");
+        }
+        return ResponseEntity.ok(inventoryService.adjustStock(id, delta));
+    }
+
+    @PutMapping("/{id}/stock-shards")
+    @Operation(summary = "Shard a product's stock",
+            description = "Moves the product's stock into the given number of sub-counters so concurrent "
+                    + "reservations on a hot product spread over several documents.")
+    public ResponseEntity<Product> shardStock(@PathVariable String id, @RequestParam int count) {
+        if (count < 2 || count > MAX_STOCK_SHARDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "count must be between 2 and " + MAX_STOCK_SHARDS);
+        }
+        return ResponseEntity.ok(productService.shardStock(id, count));
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete a product")
     public ResponseEntity<Void> deleteProduct(@PathVariable String id) {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
+
+    private void writeJsonElements(List<Product> products, OutputStream output, boolean[] first) {
+        try {
+            for (Product product : products) {
+                if (!first[0]) {
+                    output.write(',');
+                }
+                first[0] = false;
+                output.write(objectMapper.writeValueAsBytes(product));
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNdjson(List<Product> products, OutputStream output) {
+        try {
+            for (Product product : products) {
+                output.write(objectMapper.writeValueAsBytes(product));
+                output.write('\n');
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
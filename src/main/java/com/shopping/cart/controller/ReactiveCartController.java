@@ -0,0 +1,75 @@
+package com.shopping.cart.controller;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartBatchResult;
+import com.shopping.cart.model.CartLineRequest;
+import com.shopping.cart.service.ReactiveCartService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/cart")
+@Tag(name = "Shopping Cart", description = "APIs for managing shopping cart")
+public class ReactiveCartController {
+
+    private final ReactiveCartService cartService;
+
+    public ReactiveCartController(ReactiveCartService cartService) {
+        this.cartService = cartService;
+    }
+
+    @GetMapping("/{userId}")
+    @Operation(summary = "Get cart for a user")
+    public Mono<ResponseEntity<Cart>> getCart(@PathVariable String userId) {
+        return cartService.getCart(userId).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/{userId}/items")
+    @Operation(summary = "Add item to cart")
+    public Mono<ResponseEntity<Cart>> addItemToCart(
+            @PathVariable String userId,
+            @RequestParam String productId,
+            @RequestParam(required = false) String category,
+            @RequestParam Integer quantity) {
+        return cartService.addItemToCart(userId, productId, category, quantity).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/{userId}/items:batch")
+    @Operation(summary = "Add several items to cart in one write",
+            description = "Lines that cannot be added are reported in errors; the remaining lines are still added.")
+    public Mono<ResponseEntity<CartBatchResult>> addItemsToCart(
+            @PathVariable String userId,
+            @RequestBody List<CartLineRequest> lines) {
+        return cartService.addItemsToCart(userId, lines).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{userId}/items/{productId}")
+    @Operation(summary = "Update item quantity in cart")
+    public Mono<ResponseEntity<Cart>> updateCartItemQuantity(
+            @PathVariable String userId,
+            @PathVariable String productId,
+            @RequestParam Integer quantity) {
+        return cartService.updateCartItemQuantity(userId, productId, quantity).map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{userId}/items/{productId}")
+    @Operation(summary = "Remove item from cart")
+    public Mono<ResponseEntity<Cart>> removeItemFromCart(
+            @PathVariable String userId,
+            @PathVariable String productId) {
+        return cartService.removeItemFromCart(userId, productId).map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{userId}")
+    @Operation(summary = "Clear cart")
+    public Mono<ResponseEntity<Void>> clearCart(@PathVariable String userId) {
+        return cartService.clearCart(userId).then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
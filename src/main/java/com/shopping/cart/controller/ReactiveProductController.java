@@ -0,0 +1,114 @@
+package com.shopping.cart.controller;
+
+import com.shopping.cart.model.Product;
+import com.shopping.cart.service.ReactiveProductService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/products")
+@Tag(name = "Product Management", description = "APIs for managing products")
+public class ReactiveProductController {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_FILTER_LIMIT = 100;
+
+    private final ReactiveProductService productService;
+
+    public ReactiveProductController(ReactiveProductService productService) {
+        this.productService = productService;
+    }
+
+    @PostMapping
+    @Operation(summary = "Create a new product",
+            description = "The id and category are required. An id already in use, in any category, returns 409.")
+    public Mono<ResponseEntity<Product>> createProduct(@RequestBody Product product) {
+        return productService.createProduct(product)
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @GetMapping(params = {"!pageSize", "!continuationToken"})
+    @Operation(summary = "Get all products",
+            description = "Without paging parameters the whole catalog is streamed as one JSON array.")
+    public Flux<Product> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    // Matches whenever pageSize or continuationToken is given; the mapping above is the more specific one otherwise
+    @GetMapping
+    @Operation(summary = "Get a page of products",
+            description = "Returns up to pageSize products. When more are available the token for the next page "
+                    + "is returned in the " + ProductController.CONTINUATION_HEADER + " header; pass it back as continuationToken.")
+    public Mono<ResponseEntity<List<Product>>> getProductsPage(
+            @RequestParam(defaultValue = "100") int pageSize,
+            @RequestParam(required = false) String continuationToken) {
+        return productService.getProductsPage(Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE)), continuationToken)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.getContinuationToken() != null) {
+                        response.header(ProductController.CONTINUATION_HEADER, page.getContinuationToken());
+                    }
+                    return response.body(page.getResults());
+                });
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export the full catalog as newline-delimited JSON")
+    public Flux<Product> exportProducts() {
+        return productService.getAllProducts();
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get product by ID")
+    public Mono<ResponseEntity<Product>> getProductById(@PathVariable String id) {
+        return productService.getProductById(id, null)
+                .flatMap(productService::withCurrentStock)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/category/{category}")
+    @Operation(summary = "Get products by category",
+            description = "With any of minPrice, maxPrice, inStock, offset or limit the result is filtered, "
+                    + "ordered by price and paged; otherwise all products in the category are returned.")
+    public Flux<Product> getProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+        if (minPrice == null && maxPrice == null && inStock == null && offset == null && limit == null) {
+            return productService.getProductsByCategory(category);
+        }
+        return productService.filterProductsByCategory(
+                category,
+                minPrice,
+                maxPrice,
+                Boolean.TRUE.equals(inStock),
+                offset != null ? Math.max(offset, 0) : 0,
+                limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_FILTER_LIMIT);
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update a product")
+    public Mono<ResponseEntity<Product>> updateProduct(@PathVariable String id, @RequestBody Product product) {
+        return productService.updateProduct(id, product).map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete a product")
+    public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable String id) {
+        return productService.deleteProduct(id).then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
@@ -0,0 +1,119 @@
+package com.shopping.cart.migration;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBatch;
+import com.azure.cosmos.models.CosmosBatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosBatchResponse;
+import com.azure.cosmos.models.PartitionKey;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.repository.CartRepository;
+import com.shopping.cart.service.CosmosErrors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One-time migration that re-keys carts stored under a random UUID so that their
+ * id equals {@link Cart#idFor(String)}. Carts found under both keys are merged.
+ * Enable with {@code cart.migration.rekey-ids=true} and disable again once it has run.
+ * <p>
+ * Both documents live in the user's partition, so the merged cart is written and
+ * the legacy cart deleted in one transactional batch, conditional on the ETags the
+ * merge was computed from. A crash or a concurrent write therefore never leaves
+ * the legacy lines merged twice; a conflicting cart is re-read and merged again.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.migration.rekey-ids", havingValue = "true")
+public class CartIdMigrationRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CartIdMigrationRunner.class);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final CartRepository cartRepository;
+    private final CosmosContainer cartContainer;
+
+    public CartIdMigrationRunner(CartRepository cartRepository,
+                                 @Qualifier("cartContainer") CosmosContainer cartContainer) {
+        this.cartRepository = cartRepository;
+        this.cartContainer = cartContainer;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Cart> legacyCarts = cartRepository.findLegacyCarts();
+
+        log.info("Re-keying {} legacy carts", legacyCarts.size());
+        int failed = 0;
+        for (Cart legacy : legacyCarts) {
+            try {
+                rekey(legacy);
+            } catch (RuntimeException e) {
+                failed++;
+                log.warn("Failed to re-key cart {} for user {}", legacy.getId(), legacy.getUserId(), e);
+            }
+        }
+        if (failed > 0) {
+            log.warn("Cart re-keying finished; {} carts were not re-keyed, run the migration again", failed);
+        } else {
+            log.info("Cart re-keying finished");
+        }
+    }
+
+    private void rekey(Cart legacyCart) {
+        String userId = legacyCart.getUserId();
+        PartitionKey partitionKey = new PartitionKey(userId);
+        Optional<Cart> legacy = Optional.of(legacyCart);
+        for (int attempt = 1; legacy.isPresent(); attempt++) {
+            CosmosBatchResponse response = cartContainer.executeCosmosBatch(mergeBatch(legacy.get()));
+            if (response.isSuccessStatusCode()) {
+                log.debug("Re-keyed cart {} for user {}", legacyCart.getId(), userId);
+                return;
+            }
+            int status = response.getStatusCode();
+            if ((status != CosmosErrors.CONFLICT && status != CosmosErrors.PRECONDITION_FAILED) || attempt >= MAX_ATTEMPTS) {
+                throw new IllegalStateException("Re-keying batch failed with status " + status
+                        + ": " + response.getErrorMessage());
+            }
+            // Either cart changed since it was read; merge again from current state
+            legacy = cartRepository.findById(legacyCart.getId(), partitionKey);
+        }
+    }
+
+    private CosmosBatch mergeBatch(Cart legacy) {
+        String userId = legacy.getUserId();
+        Optional<Cart> existing = cartRepository.findById(Cart.idFor(userId), new PartitionKey(userId));
+
+        Cart target = existing.orElseGet(() -> new Cart(Cart.idFor(userId), userId, new ArrayList<>()));
+        for (CartItem item : legacy.getItems()) {
+            merge(target, item);
+        }
+
+        CosmosBatch batch = CosmosBatch.createCosmosBatch(new PartitionKey(userId));
+        if (existing.isPresent()) {
+            batch.replaceItemOperation(target.getId(), target,
+                    new CosmosBatchItemRequestOptions().setIfMatchETag(existing.get().get_etag()));
+        } else {
+            batch.createItemOperation(target);
+        }
+        batch.deleteItemOperation(legacy.getId(), new CosmosBatchItemRequestOptions().setIfMatchETag(legacy.get_etag()));
+        return batch;
+    }
+
+    private void merge(Cart target, CartItem item) {
+        target.getItems().stream()
+                .filter(existing -> existing.getProductId().equals(item.getProductId()))
+                .findFirst()
+                .ifPresentOrElse(
+                        existing -> existing.setQuantity(existing.getQuantity() + item.getQuantity()),
+                        () -> target.getItems().add(item));
+    }
+}
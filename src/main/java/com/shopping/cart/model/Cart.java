@@ -3,13 +3,16 @@ package com.shopping.cart.model;
 import com.azure.spring.data.cosmos.core.mapping.Container;
 import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
 import java.util.ArrayList;
 import java.util.List;
 
-@Container(containerName = "carts")
+@Container(containerName = Cart.CONTAINER_NAME)
 public class Cart {
 
+    public static final String CONTAINER_NAME = "carts";
+
     @Id
     private String id;
 
@@ -18,6 +21,12 @@ public class Cart {
 
     private List<CartItem> items = new ArrayList<>();
 
+    // Catalog version the line prices were last checked against
+    private Long catalogVersion;
+
+    @Version
+    private String _etag;
+
     public Cart() {
     }
 
@@ -27,6 +36,10 @@ public class Cart {
         this.items = items;
     }
 
+    public static String idFor(String userId) {
+        return userId;
+    }
+
     public String getId() {
         return id;
     }
@@ -51,6 +64,22 @@ public class Cart {
         this.items = items;
     }
 
+    public Long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(Long catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public String get_etag() {
+        return _etag;
+    }
+
+    public void set_etag(String _etag) {
+        this._etag = _etag;
+    }
+
     public Double getTotalAmount() {
         return items.stream()
                 .mapToDouble(CartItem::getSubtotal)
@@ -0,0 +1,34 @@
+package com.shopping.cart.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CartBatchResult {
+
+    private Cart cart;
+    private List<CartLineError> errors = new ArrayList<>();
+
+    public CartBatchResult() {
+    }
+
+    public CartBatchResult(Cart cart, List<CartLineError> errors) {
+        this.cart = cart;
+        this.errors = errors;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    public void setCart(Cart cart) {
+        this.cart = cart;
+    }
+
+    public List<CartLineError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<CartLineError> errors) {
+        this.errors = errors;
+    }
+}
@@ -3,15 +3,19 @@ package com.shopping.cart.model;
 public class CartItem {
 
     private String productId;
+    private String category;
     private String productName;
     private Double price;
     private Integer quantity;
+    private Integer reservedQuantity;
+    private Long reservationExpiresAt;
 
     public CartItem() {
     }
 
-    public CartItem(String productId, String productName, Double price, Integer quantity) {
+    public CartItem(String productId, String category, String productName, Double price, Integer quantity) {
         this.productId = productId;
+        this.category = category;
         this.productName = productName;
         this.price = price;
         this.quantity = quantity;
@@ -25,6 +29,14 @@ public class CartItem {
         this.productId = productId;
     }
 
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
     public String getProductName() {
         return productName;
     }
@@ -49,6 +61,22 @@ public class CartItem {
         this.quantity = quantity;
     }
 
+    public Integer getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public void setReservedQuantity(Integer reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+
+    public Long getReservationExpiresAt() {
+        return reservationExpiresAt;
+    }
+
+    public void setReservationExpiresAt(Long reservationExpiresAt) {
+        this.reservationExpiresAt = reservationExpiresAt;
+    }
+
     public Double getSubtotal() {
         return price * quantity;
     }
@@ -0,0 +1,31 @@
+package com.shopping.cart.model;
+
+public class CartLineError {
+
+    private String productId;
+    private String message;
+
+    public CartLineError() {
+    }
+
+    public CartLineError(String productId, String message) {
+        this.productId = productId;
+        this.message = message;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
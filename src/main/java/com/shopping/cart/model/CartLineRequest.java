@@ -0,0 +1,31 @@
+package com.shopping.cart.model;
+
+public class CartLineRequest {
+
+    private String productId;
+    private Integer quantity;
+
+    public CartLineRequest() {
+    }
+
+    public CartLineRequest(String productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
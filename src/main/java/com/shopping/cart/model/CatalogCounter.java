@@ -0,0 +1,46 @@
+package com.shopping.cart.model;
+
+import com.azure.spring.data.cosmos.core.mapping.Container;
+import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
+import org.springframework.data.annotation.Id;
+
+/**
+ * A counter kept in the store and advanced with atomic increments, for values that
+ * must be ordered across nodes regardless of their clocks.
+ */
+@Container(containerName = CatalogCounter.CONTAINER_NAME)
+public class CatalogCounter {
+
+    public static final String CONTAINER_NAME = "counters";
+    public static final String CATALOG_VERSION = "catalog-version";
+
+    @Id
+    @PartitionKey
+    private String id;
+
+    private Long value;
+
+    public CatalogCounter() {
+    }
+
+    public CatalogCounter(String id, Long value) {
+        this.id = id;
+        this.value = value;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getValue() {
+        return value;
+    }
+
+    public void setValue(Long value) {
+        this.value = value;
+    }
+}
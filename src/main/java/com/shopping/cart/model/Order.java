@@ -0,0 +1,100 @@
+package com.shopping.cart.model;
+
+import com.azure.spring.data.cosmos.core.mapping.Container;
+import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
+import org.springframework.data.annotation.Id;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A placed order. Orders are stored in the carts container under the user's
+ * partition so that writing the order and emptying the cart can be one
+ * transactional batch; {@link #TYPE} tells them apart from cart documents.
+ */
+@Container(containerName = Cart.CONTAINER_NAME)
+public class Order {
+
+    public static final String TYPE = "order";
+    public static final String STATUS_PLACED = "PLACED";
+
+    @Id
+    private String id;
+
+    @PartitionKey
+    private String userId;
+
+    private String type = TYPE;
+    private String status;
+    private List<CartItem> items = new ArrayList<>();
+    private Double totalAmount;
+    private Long createdAt;
+
+    public Order() {
+    }
+
+    public Order(String id, String userId, List<CartItem> items, Double totalAmount, Long createdAt) {
+        this.id = id;
+        this.userId = userId;
+        this.status = STATUS_PLACED;
+        this.items = items;
+        this.totalAmount = totalAmount;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public List<CartItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<CartItem> items) {
+        this.items = items;
+    }
+
+    public Double getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(Double totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -4,9 +4,11 @@ import com.azure.spring.data.cosmos.core.mapping.Container;
 import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
 import org.springframework.data.annotation.Id;
 
-@Container(containerName = "products")
+@Container(containerName = Product.CONTAINER_NAME)
 public class Product {
 
+    public static final String CONTAINER_NAME = "products";
+
     @Id
     private String id;
 
@@ -17,6 +19,8 @@ public class Product {
     private String description;
     private Double price;
     private Integer stockQuantity;
+    private Integer stockShards;
+    private Long priceChangedAt;
 
     public Product() {
     }
@@ -77,4 +81,24 @@ public class Product {
     public void setStockQuantity(Integer stockQuantity) {
         this.stockQuantity = stockQuantity;
     }
+
+    public Integer getStockShards() {
+        return stockShards;
+    }
+
+    public void setStockShards(Integer stockShards) {
+        this.stockShards = stockShards;
+    }
+
+    public boolean hasShardedStock() {
+        return stockShards != null && stockShards > 0;
+    }
+
+    public Long getPriceChangedAt() {
+        return priceChangedAt;
+    }
+
+    public void setPriceChangedAt(Long priceChangedAt) {
+        this.priceChangedAt = priceChangedAt;
+    }
 }
@@ -0,0 +1,41 @@
+package com.shopping.cart.model;
+
+public class ProductImportError {
+
+    private long line;
+    private String productId;
+    private String message;
+
+    public ProductImportError() {
+    }
+
+    public ProductImportError(long line, String productId, String message) {
+        this.line = line;
+        this.productId = productId;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
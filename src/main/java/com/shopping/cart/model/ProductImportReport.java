@@ -0,0 +1,69 @@
+package com.shopping.cart.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportReport {
+
+    private long received;
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    private List<ProductImportError> errors = new ArrayList<>();
+
+    public ProductImportReport() {
+    }
+
+    public ProductImportReport(long received, long imported, long failed, long elapsedMillis,
+                               List<ProductImportError> errors) {
+        this.received = received;
+        this.imported = imported;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = errors;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<ProductImportError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ProductImportError> errors) {
+        this.errors = errors;
+    }
+
+    public Double getRowsPerSecond() {
+        return elapsedMillis == 0 ? (double) imported : imported * 1000.0 / elapsedMillis;
+    }
+}
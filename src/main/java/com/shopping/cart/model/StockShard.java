@@ -0,0 +1,69 @@
+package com.shopping.cart.model;
+
+import com.azure.spring.data.cosmos.core.mapping.Container;
+import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
+import org.springframework.data.annotation.Id;
+
+/**
+ * One of a product's stock sub-counters. Each shard is its own logical partition
+ * so reservations against different shards of the same product do not contend.
+ */
+@Container(containerName = StockShard.CONTAINER_NAME)
+public class StockShard {
+
+    public static final String CONTAINER_NAME = "stock-shards";
+
+    @Id
+    @PartitionKey
+    private String id;
+
+    private String productId;
+    private Integer shard;
+    private Integer quantity;
+
+    public StockShard() {
+    }
+
+    public StockShard(String productId, Integer shard, Integer quantity) {
+        this.id = idFor(productId, shard);
+        this.productId = productId;
+        this.shard = shard;
+        this.quantity = quantity;
+    }
+
+    public static String idFor(String productId, int shard) {
+        return productId + ":" + shard;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public Integer getShard() {
+        return shard;
+    }
+
+    public void setShard(Integer shard) {
+        this.shard = shard;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -1,12 +1,21 @@
 package com.shopping.cart.repository;
 
 import com.azure.spring.data.cosmos.repository.CosmosRepository;
+import com.azure.spring.data.cosmos.repository.Query;
 import com.shopping.cart.model.Cart;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends CosmosRepository<Cart, String> {
-    Optional<Cart> findByUserId(String userId);
+
+    // The carts container also holds orders (type = 'order'); cart documents have no type
+    @Query("SELECT * FROM c WHERE c.userId = @userId AND NOT IS_DEFINED(c.type)")
+    Optional<Cart> findByUserId(@Param("userId") String userId);
+
+    @Query("SELECT * FROM c WHERE c.id != c.userId AND NOT IS_DEFINED(c.type)")
+    List<Cart> findLegacyCarts();
 }
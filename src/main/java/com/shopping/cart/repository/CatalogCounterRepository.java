@@ -0,0 +1,9 @@
+package com.shopping.cart.repository;
+
+import com.azure.spring.data.cosmos.repository.CosmosRepository;
+import com.shopping.cart.model.CatalogCounter;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CatalogCounterRepository extends CosmosRepository<CatalogCounter, String> {
+}
@@ -0,0 +1,16 @@
+package com.shopping.cart.repository;
+
+import com.azure.spring.data.cosmos.repository.CosmosRepository;
+import com.azure.spring.data.cosmos.repository.Query;
+import com.shopping.cart.model.Order;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderRepository extends CosmosRepository<Order, String> {
+
+    @Query("SELECT * FROM c WHERE c.userId = @userId AND c.type = 'order' ORDER BY c.createdAt DESC")
+    List<Order> findOrdersByUserId(@Param("userId") String userId);
+}
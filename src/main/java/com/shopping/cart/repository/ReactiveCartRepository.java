@@ -0,0 +1,15 @@
+package com.shopping.cart.repository;
+
+import com.azure.spring.data.cosmos.repository.Query;
+import com.azure.spring.data.cosmos.repository.ReactiveCosmosRepository;
+import com.shopping.cart.model.Cart;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveCartRepository extends ReactiveCosmosRepository<Cart, String> {
+
+    @Query("SELECT * FROM c WHERE c.userId = @userId AND NOT IS_DEFINED(c.type)")
+    Flux<Cart> findByUserId(@Param("userId") String userId);
+}
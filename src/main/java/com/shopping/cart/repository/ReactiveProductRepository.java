@@ -0,0 +1,11 @@
+package com.shopping.cart.repository;
+
+import com.azure.spring.data.cosmos.repository.ReactiveCosmosRepository;
+import com.shopping.cart.model.Product;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveProductRepository extends ReactiveCosmosRepository<Product, String> {
+    Flux<Product> findByCategory(String category);
+}
@@ -0,0 +1,9 @@
+package com.shopping.cart.repository;
+
+import com.azure.spring.data.cosmos.repository.CosmosRepository;
+import com.shopping.cart.model.StockShard;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockShardRepository extends CosmosRepository<StockShard, String> {
+}
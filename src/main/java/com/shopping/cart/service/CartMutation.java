@@ -0,0 +1,13 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+
+@FunctionalInterface
+public interface CartMutation {
+
+    /**
+     * Applies the change to the in-memory cart and records the equivalent
+     * partial-document operations on the patch.
+     */
+    void apply(Cart cart, CartPatch patch);
+}
@@ -0,0 +1,128 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists cart changes as partial-document patches so the write size does not
+ * depend on how many lines the cart holds. Missing carts are created on their
+ * first non-empty change with a create-if-absent insert.
+ * <p>
+ * Every patch is conditional on the ETag the change was computed against. When
+ * another writer got there first the cart is re-read and the change re-applied
+ * after a jittered back-off. Changes too large for a single patch request fall
+ * back to a full replace, which is equally conditional on the ETag.
+ */
+@Component
+public class CartMutationEngine {
+
+    // Cosmos DB accepts at most 10 operations in a single patch request
+    static final int MAX_PATCH_OPERATIONS = 10;
+
+    private final CartRepository cartRepository;
+    private final CosmosTemplate cosmosTemplate;
+    private final boolean legacyLookup;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public CartMutationEngine(CartRepository cartRepository,
+                              CosmosTemplate cosmosTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${cart.addressing.legacy-lookup:false}") boolean legacyLookup,
+                              @Value("${cart.concurrency.max-attempts:5}") int maxAttempts,
+                              @Value("${cart.concurrency.backoff-millis:10}") long backoffMillis) {
+        this.cartRepository = cartRepository;
+        this.cosmosTemplate = cosmosTemplate;
+        this.legacyLookup = legacyLookup;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.retries = meterRegistry.counter("cart.write.retries");
+        this.exhausted = meterRegistry.counter("cart.write.retries.exhausted");
+    }
+
+    public Optional<Cart> find(String userId) {
+        Optional<Cart> cart = cartRepository.findById(Cart.idFor(userId), new PartitionKey(userId));
+        if (cart.isEmpty() && legacyLookup) {
+            return cartRepository.findByUserId(userId);
+        }
+        return cart;
+    }
+
+    public Cart emptyCart(String userId) {
+        return new Cart(Cart.idFor(userId), userId, new ArrayList<>());
+    }
+
+    public Cart apply(String userId, CartMutation mutation) {
+        return apply(userId, mutation, find(userId));
+    }
+
+    /**
+     * Applies a change starting from a cart the caller has already read, saving the
+     * read on the first attempt. A stale snapshot costs one retry: the ETag check
+     * fails and the cart is re-read.
+     */
+    public Cart apply(String userId, CartMutation mutation, Optional<Cart> snapshot) {
+        Optional<Cart> existing = snapshot;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return applyOnce(userId, mutation, existing);
+            } catch (RuntimeException e) {
+                if (!CosmosErrors.isConflict(e) && !CosmosErrors.isPreconditionFailed(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                backOff(attempt);
+                existing = find(userId);
+            }
+        }
+    }
+
+    private Cart applyOnce(String userId, CartMutation mutation, Optional<Cart> existing) {
+        Cart cart = existing.orElseGet(() -> emptyCart(userId));
+        CartPatch patch = new CartPatch();
+        mutation.apply(cart, patch);
+
+        if (patch.isEmpty()) {
+            return cart;
+        }
+        if (existing.isEmpty()) {
+            return cosmosTemplate.insert(cosmosTemplate.getContainerName(Cart.class), cart, new PartitionKey(userId));
+        }
+
+        if (patch.size() > MAX_PATCH_OPERATIONS) {
+            return cartRepository.save(cart);
+        }
+
+        CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+        options.setIfMatchETag(cart.get_etag());
+        return cartRepository.save(cart.getId(), new PartitionKey(userId), Cart.class, patch.toOperations(), options);
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt, 6);
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying cart write", e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serializes cart mutations per user before they reach the store. Each user with
+ * changes in flight has its own mailbox: a lock-free queue drained by whichever
+ * submitting thread wins the mailbox's drain flag. Mutations queued for the same
+ * user while a write is in flight are folded into a single write, so bursts for
+ * one cart turn into fewer, non-conflicting store writes. A draining thread only
+ * ever writes its own user's cart, so different users never wait on each other.
+ * Mailboxes are dropped as soon as they are empty.
+ * <p>
+ * With a coalescing window configured, a mailbox is not drained by the submitting
+ * thread but flushed once the window has elapsed, folding every change made to a
+ * cart within that window into one write. Callers still block until the write
+ * holding their change has been persisted, so a response always reflects the
+ * caller's own write. The scheduler thread only times the window; flushes run on
+ * the mailbox's own bounded flush pool. When that pool is saturated the flush is
+ * not run on the scheduler: the changes it held fail with {@code 503} and their
+ * callers return at once, so the scheduler never blocks on a write.
+ */
+@Component
+public class CartMutationMailbox {
+
+    private static final int MAX_BATCH = 64;
+
+    private final CartMutationEngine mutationEngine;
+    private final ConcurrentHashMap<String, UserMailbox> mailboxes = new ConcurrentHashMap<>();
+    private final long windowMillis;
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService flushExecutor;
+
+    public CartMutationMailbox(CartMutationEngine mutationEngine,
+                               @Value("${cart.mailbox.coalescing-window-millis:0}") long windowMillis,
+                               @Value("${cart.mailbox.flush-threads:16}") int flushThreads,
+                               @Value("${cart.mailbox.flush-queue-capacity:256}") int flushQueueCapacity) {
+        this.mutationEngine = mutationEngine;
+        this.windowMillis = windowMillis;
+        this.flusher = windowMillis > 0
+                ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "cart-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        this.flushExecutor = windowMillis > 0 ? flushExecutor(flushThreads, flushQueueCapacity) : null;
+    }
+
+    public Cart submit(String userId, CartMutation mutation) {
+        return submit(new Pending(userId, mutation, null));
+    }
+
+    /**
+     * Like {@link #submit(String, CartMutation)}, starting from a cart the caller has
+     * already read. The snapshot is used when the change is written on its own.
+     */
+    public Cart submit(String userId, CartMutation mutation, Optional<Cart> snapshot) {
+        return submit(new Pending(userId, mutation, snapshot));
+    }
+
+    private Cart submit(Pending pending) {
+        // Enqueued inside compute so a mailbox is never retired with a change in it
+        UserMailbox mailbox = mailboxes.compute(pending.userId, (userId, existing) -> {
+            UserMailbox target = existing != null ? existing : new UserMailbox(userId);
+            target.queue.offer(pending);
+            return target;
+        });
+        if (flusher != null) {
+            mailbox.scheduleFlush();
+        } else {
+            mailbox.drain();
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flushExecutor.shutdown();
+        }
+    }
+
+    int activeMailboxes() {
+        return mailboxes.size();
+    }
+
+    private void write(String userId, List<Pending> group) {
+        try {
+            Pending first = group.get(0);
+            Cart cart = group.size() == 1 && first.snapshot != null
+                    ? mutationEngine.apply(userId, first.mutation, first.snapshot)
+                    : mutationEngine.apply(userId, (current, patch) ->
+                            group.forEach(pending -> pending.mutation.apply(current, patch)));
+            group.forEach(pending -> pending.result.complete(cart));
+        } catch (RuntimeException e) {
+            group.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    private final class UserMailbox {
+
+        private final String userId;
+        private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private UserMailbox(String userId) {
+            this.userId = userId;
+        }
+
+        private void drain() {
+            while (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                try {
+                    drainQueued();
+                } finally {
+                    draining.set(false);
+                }
+            }
+            retireIfIdle();
+        }
+
+        private void scheduleFlush() {
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                flusher.schedule(this::startFlush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Runs on the scheduler thread, which must only hand the flush over
+        private void startFlush() {
+            try {
+                flushExecutor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                ResponseStatusException busy = new ResponseStatusException(
+                        HttpStatus.SERVICE_UNAVAILABLE, "Too many cart writes in progress; try again");
+                Pending pending;
+                while ((pending = queue.poll()) != null) {
+                    pending.result.completeExceptionally(busy);
+                }
+                draining.set(false);
+                scheduleFlush();
+                retireIfIdle();
+            }
+        }
+
+        private void flush() {
+            try {
+                drainQueued();
+            } finally {
+                draining.set(false);
+            }
+            scheduleFlush();
+            retireIfIdle();
+        }
+
+        private void drainQueued() {
+            List<Pending> batch;
+            while (!(batch = pollBatch()).isEmpty()) {
+                write(userId, batch);
+            }
+        }
+
+        private void retireIfIdle() {
+            mailboxes.computeIfPresent(userId, (id, current) ->
+                    current == this && queue.isEmpty() && !draining.get() ? null : current);
+        }
+
+        private List<Pending> pollBatch() {
+            List<Pending> batch = new ArrayList<>();
+            Pending pending;
+            while (batch.size() < MAX_BATCH && (pending = queue.poll()) != null) {
+                batch.add(pending);
+            }
+            return batch;
+        }
+    }
+
+    // Bounded in threads and queue, and never runs a flush on the submitting thread
+    private static ExecutorService flushExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cart-flush-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static final class Pending {
+
+        private final String userId;
+        private final CartMutation mutation;
+        private final Optional<Cart> snapshot;
+        private final CompletableFuture<Cart> result = new CompletableFuture<>();
+
+        private Pending(String userId, CartMutation mutation, Optional<Cart> snapshot) {
+            this.userId = userId;
+            this.mutation = mutation;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public final class CartMutations {
+
+    private CartMutations() {
+    }
+
+    /**
+     * Adds the quantity to the product's line and records the reservation made for
+     * it on the line, extending the line's hold to the reservation's expiry.
+     */
+    public static CartMutation addItem(Product product, Integer quantity, StockReservation reservation) {
+        return (cart, patch) -> {
+            int index = indexOf(cart, product.getId());
+            if (index >= 0) {
+                CartItem item = cart.getItems().get(index);
+                item.setQuantity(item.getQuantity() + quantity);
+                patch.increment(itemPath(index) + "/quantity", quantity);
+                if (reservation.getQuantity() > 0) {
+                    hold(item, index, reservedOf(item) + reservation.getQuantity(), reservation.getExpiresAt(), patch);
+                }
+            } else {
+                CartItem item = new CartItem(
+                        product.getId(),
+                        product.getCategory(),
+                        product.getName(),
+                        product.getPrice(),
+                        quantity
+                );
+                if (reservation.getQuantity() > 0) {
+                    item.setReservedQuantity(reservation.getQuantity());
+                    item.setReservationExpiresAt(reservation.getExpiresAt());
+                }
+                cart.getItems().add(item);
+                patch.add("/items/-", item);
+            }
+        };
+    }
+
+    /**
+     * Sets a line's quantity. {@code extra} is stock reserved up front for an
+     * increase; the line keeps at most {@code quantity} units on hold and whatever it
+     * no longer needs (including {@code extra} if the line is gone) is collected in
+     * {@code released}.
+     */
+    public static CartMutation setQuantity(String productId, Integer quantity,
+                                           StockReservation extra, StockReleases released) {
+        return (cart, patch) -> {
+            released.reset();
+            int index = indexOf(cart, productId);
+            if (index < 0) {
+                released.add(extra);
+                return;
+            }
+            CartItem item = cart.getItems().get(index);
+            int held = reservedOf(item) + extra.getQuantity();
+            int kept = Math.max(0, Math.min(quantity, held));
+            released.add(productId, item.getCategory(), held - kept);
+
+            if (!item.getQuantity().equals(quantity)) {
+                item.setQuantity(quantity);
+                patch.set(itemPath(index) + "/quantity", quantity);
+            }
+            if (kept != reservedOf(item) || extra.getQuantity() > 0) {
+                Long expiresAt = extra.getQuantity() > 0 ? extra.getExpiresAt() : item.getReservationExpiresAt();
+                hold(item, index, kept, expiresAt, patch);
+            }
+        };
+    }
+
+    /**
+     * Whether the cart holds the reservation: its line carries a hold that expires
+     * no earlier than the reservation, which only a write recording this reservation
+     * or a later one can have set.
+     */
+    public static boolean holds(Cart cart, StockReservation reservation) {
+        int index = indexOf(cart, reservation.getProductId());
+        if (index < 0 || reservation.getExpiresAt() == null) {
+            return false;
+        }
+        CartItem item = cart.getItems().get(index);
+        return reservedOf(item) > 0
+                && item.getReservationExpiresAt() != null
+                && item.getReservationExpiresAt() >= reservation.getExpiresAt();
+    }
+
+    public static CartMutation removeItem(String productId, StockReleases released) {
+        return (cart, patch) -> {
+            released.reset();
+            int index = indexOf(cart, productId);
+            if (index < 0) {
+                return;
+            }
+            CartItem item = cart.getItems().remove(index);
+            released.add(item.getProductId(), item.getCategory(), reservedOf(item));
+            patch.remove(itemPath(index));
+        };
+    }
+
+    public static CartMutation clear(StockReleases released) {
+        return (cart, patch) -> {
+            released.reset();
+            if (cart.getItems().isEmpty()) {
+                return;
+            }
+            cart.getItems().forEach(item -> released.add(item.getProductId(), item.getCategory(), reservedOf(item)));
+            cart.getItems().clear();
+            patch.set("/items", new ArrayList<CartItem>());
+        };
+    }
+
+    /**
+     * Drops the hold on every line whose reservation expired at or before
+     * {@code now}. The lines stay in the cart without reserved stock.
+     */
+    public static CartMutation expireReservations(long now, StockReleases released) {
+        return (cart, patch) -> {
+            released.reset();
+            List<CartItem> items = cart.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                CartItem item = items.get(i);
+                Long expiresAt = item.getReservationExpiresAt();
+                if (reservedOf(item) > 0 && expiresAt != null && expiresAt <= now) {
+                    released.add(item.getProductId(), item.getCategory(), reservedOf(item));
+                    item.setReservedQuantity(0);
+                    patch.set(itemPath(i) + "/reservedQuantity", 0);
+                }
+            }
+        };
+    }
+
+    /**
+     * Refreshes stale lines like {@link #refreshPrices(Map)} and records that the
+     * cart's prices are current as of {@code catalogVersion}.
+     */
+    public static CartMutation reprice(Map<String, Product> products, long catalogVersion) {
+        CartMutation refresh = refreshPrices(products);
+        CartMutation stamp = stamp(catalogVersion);
+        return (cart, patch) -> {
+            refresh.apply(cart, patch);
+            stamp.apply(cart, patch);
+        };
+    }
+
+    /**
+     * Records that the cart's prices are current as of {@code catalogVersion},
+     * unless it already records a later version.
+     */
+    public static CartMutation stamp(long catalogVersion) {
+        return (cart, patch) -> {
+            if (cart.getCatalogVersion() == null || cart.getCatalogVersion() < catalogVersion) {
+                cart.setCatalogVersion(catalogVersion);
+                patch.set("/catalogVersion", catalogVersion);
+            }
+        };
+    }
+
+    /**
+     * Brings each line's price and name in line with the given products. Lines for
+     * products not in the map are left alone.
+     */
+    public static CartMutation refreshPrices(Map<String, Product> products) {
+        return (cart, patch) -> {
+            List<CartItem> items = cart.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                CartItem item = items.get(i);
+                Product product = products.get(item.getProductId());
+                if (product == null) {
+                    continue;
+                }
+                if (!Objects.equals(item.getPrice(), product.getPrice())) {
+                    item.setPrice(product.getPrice());
+                    patch.set(itemPath(i) + "/price", product.getPrice());
+                }
+                if (!Objects.equals(item.getProductName(), product.getName())) {
+                    item.setProductName(product.getName());
+                    patch.set(itemPath(i) + "/productName", product.getName());
+                }
+            }
+        };
+    }
+
+    static int indexOf(Cart cart, String productId) {
+        List<CartItem> items = cart.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getProductId().equals(productId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int reservedOf(CartItem item) {
+        return item.getReservedQuantity() != null ? item.getReservedQuantity() : 0;
+    }
+
+    private static void hold(CartItem item, int index, int reserved, Long expiresAt, CartPatch patch) {
+        item.setReservedQuantity(reserved);
+        item.setReservationExpiresAt(expiresAt);
+        patch.set(itemPath(index) + "/reservedQuantity", reserved);
+        patch.set(itemPath(index) + "/reservationExpiresAt", expiresAt);
+    }
+
+    private static String itemPath(int index) {
+        return "/items/" + index;
+    }
+}
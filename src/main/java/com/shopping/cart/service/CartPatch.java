@@ -0,0 +1,42 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class CartPatch {
+
+    private final List<Consumer<CosmosPatchOperations>> operations = new ArrayList<>();
+
+    public void add(String path, Object value) {
+        operations.add(ops -> ops.add(path, value));
+    }
+
+    public void set(String path, Object value) {
+        operations.add(ops -> ops.set(path, value));
+    }
+
+    public void remove(String path) {
+        operations.add(ops -> ops.remove(path));
+    }
+
+    public void increment(String path, long value) {
+        operations.add(ops -> ops.increment(path, value));
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public CosmosPatchOperations toOperations() {
+        CosmosPatchOperations patchOperations = CosmosPatchOperations.create();
+        operations.forEach(operation -> operation.accept(patchOperations));
+        return patchOperations;
+    }
+}
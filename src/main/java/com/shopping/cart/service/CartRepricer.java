@@ -0,0 +1,119 @@
+package com.shopping.cart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Keeps the price and name snapshots on cart lines current. A cart records the
+ * {@link CatalogVersion} its lines were last checked against; while no product
+ * price or name has changed since, the check is a single comparison. Otherwise all
+ * of the cart's products are read in one batched (cached) lookup. Stale lines are
+ * rewritten together with the new version in one cart write. A cart with no stale
+ * line is not written: the version it was checked against is remembered on this
+ * node, so later reads are again a single comparison, and it is stored with the
+ * cart's next change.
+ */
+@Service
+public class CartRepricer {
+
+    private static final Logger log = LoggerFactory.getLogger(CartRepricer.class);
+    private static final long MAX_CHECKED_CARTS = 100_000;
+
+    private final CatalogVersion catalogVersion;
+    private final ProductService productService;
+    private final CartMutationMailbox mailbox;
+    private final boolean enabled;
+    private final Counter skipped;
+    private final Counter current;
+    private final Counter repriced;
+    // Version each clean cart was last found current at, not yet stored on the cart
+    private final Cache<String, Long> checked = Caffeine.newBuilder()
+            .maximumSize(MAX_CHECKED_CARTS)
+            .build();
+
+    public CartRepricer(CatalogVersion catalogVersion,
+                        ProductService productService,
+                        CartMutationMailbox mailbox,
+                        MeterRegistry meterRegistry,
+                        @Value("${cart.reprice.enabled:true}") boolean enabled) {
+        this.catalogVersion = catalogVersion;
+        this.productService = productService;
+        this.mailbox = mailbox;
+        this.enabled = enabled;
+        this.skipped = meterRegistry.counter("cart.reprice", "outcome", "skipped");
+        this.current = meterRegistry.counter("cart.reprice", "outcome", "current");
+        this.repriced = meterRegistry.counter("cart.reprice", "outcome", "repriced");
+    }
+
+    public Cart reprice(Cart cart) {
+        if (!enabled || cart.getItems().isEmpty()) {
+            return cart;
+        }
+        // Read before the products, so a change landing meanwhile leaves the cart behind the version
+        long version = catalogVersion.current();
+        if (checkedAt(cart) >= version) {
+            skipped.increment();
+            return cart;
+        }
+
+        Map<String, Product> products = productService.getProductsByIds(
+                cart.getItems().stream().map(CartItem::getProductId).distinct().toList());
+        if (cart.getItems().stream().noneMatch(item -> isStale(item, products.get(item.getProductId())))) {
+            current.increment();
+            checked.asMap().merge(cart.getUserId(), version, Math::max);
+            return cart;
+        }
+        repriced.increment();
+        try {
+            return mailbox.submit(cart.getUserId(), CartMutations.reprice(products, version), Optional.of(cart));
+        } catch (RuntimeException e) {
+            // The cart is still readable; the next read tries again
+            log.warn("Failed to reprice cart {}", cart.getId(), e);
+            return cart;
+        }
+    }
+
+    /**
+     * Wraps a change to a user's cart so it also stores the version the cart was
+     * last found current at on this node, if that is ahead of the cart's own.
+     */
+    public CartMutation stamping(String userId, CartMutation mutation) {
+        Long version = checked.getIfPresent(userId);
+        if (version == null) {
+            return mutation;
+        }
+        CartMutation stamp = CartMutations.stamp(version);
+        return (cart, patch) -> {
+            mutation.apply(cart, patch);
+            // A change that writes nothing is not turned into a write just for the stamp
+            if (!patch.isEmpty()) {
+                stamp.apply(cart, patch);
+            }
+        };
+    }
+
+    private long checkedAt(Cart cart) {
+        long stored = cart.getCatalogVersion() != null ? cart.getCatalogVersion() : Long.MIN_VALUE;
+        Long remembered = checked.getIfPresent(cart.getUserId());
+        return remembered != null ? Math.max(stored, remembered) : stored;
+    }
+
+    private static boolean isStale(CartItem item, Product product) {
+        return product != null
+                && (!Objects.equals(item.getPrice(), product.getPrice())
+                || !Objects.equals(item.getProductName(), product.getName()));
+    }
+}
@@ -1,83 +1,207 @@
 package com.shopping.cart.service;
 
 import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartBatchResult;
 import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.CartLineError;
+import com.shopping.cart.model.CartLineRequest;
 import com.shopping.cart.model.Product;
-import com.shopping.cart.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final ProductService productService;
+    private static final Logger log = LoggerFactory.getLogger(CartService.class);
 
-    public CartService(CartRepository cartRepository, ProductService productService) {
-        this.cartRepository = cartRepository;
+    private final CartMutationEngine mutationEngine;
+    private final CartMutationMailbox mailbox;
+    private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final CartRepricer repricer;
+    private final ExecutorService ioExecutor;
+
+    public CartService(CartMutationEngine mutationEngine,
+                       CartMutationMailbox mailbox,
+                       ProductService productService,
+                       InventoryService inventoryService,
+                       CartRepricer repricer,
+                       @Qualifier("ioExecutor") ExecutorService ioExecutor) {
+        this.mutationEngine = mutationEngine;
+        this.mailbox = mailbox;
         this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.repricer = repricer;
+        this.ioExecutor = ioExecutor;
     }
 
-    public Cart getOrCreateCart(String userId) {
-        return cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setId(UUID.randomUUID().toString());
-                    newCart.setUserId(userId);
-                    return cartRepository.save(newCart);
-                });
+    public Cart addItemToCart(String userId, String productId, String category, Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "quantity must be at least 1");
+        }
+        // The cart and product reads are independent; read the cart on the I/O pool meanwhile
+        CompletableFuture<Optional<Cart>> cartRead =
+                CompletableFuture.supplyAsync(() -> mutationEngine.find(userId), ioExecutor);
+
+        StockReservation reservation;
+        try {
+            Product product = productService.getProductById(productId, category)
+                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            reservation = inventoryService.reserve(product, quantity);
+            return submit(userId, CartMutations.addItem(product, quantity, reservation), cartRead, List.of(reservation));
+        } catch (RuntimeException e) {
+            cartRead.cancel(false);
+            throw e;
+        }
     }
 
-    public Cart addItemToCart(String userId, String productId, Integer quantity) {
-        Cart cart = getOrCreateCart(userId);
-        Product product = productService.getProductById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst();
-
-        if (existingItem.isPresent()) {
-            existingItem.get().setQuantity(existingItem.get().getQuantity() + quantity);
-        } else {
-            CartItem newItem = new CartItem(
-                    product.getId(),
-                    product.getName(),
-                    product.getPrice(),
-                    quantity
-            );
-            cart.getItems().add(newItem);
+    public CartBatchResult addItemsToCart(String userId, List<CartLineRequest> lines) {
+        List<CartLineError> errors = new ArrayList<>();
+        List<CartLineRequest> valid = new ArrayList<>();
+        for (CartLineRequest line : lines) {
+            if (line.getProductId() == null || line.getProductId().isBlank()) {
+                errors.add(new CartLineError(line.getProductId(), "productId is required"));
+            } else if (line.getQuantity() == null || line.getQuantity() < 1) {
+                errors.add(new CartLineError(line.getProductId(), "quantity must be at least 1"));
+            } else {
+                valid.add(line);
+            }
         }
 
-        return cartRepository.save(cart);
+        Map<String, Product> products = productService.getProductsByIds(
+                valid.stream().map(CartLineRequest::getProductId).distinct().toList());
+
+        List<CartMutation> mutations = new ArrayList<>();
+        List<StockReservation> reservations = new ArrayList<>();
+        for (CartLineRequest line : valid) {
+            Product product = products.get(line.getProductId());
+            if (product == null) {
+                errors.add(new CartLineError(line.getProductId(), "Product not found"));
+                continue;
+            }
+            try {
+                StockReservation reservation = inventoryService.reserve(product, line.getQuantity());
+                reservations.add(reservation);
+                mutations.add(CartMutations.addItem(product, line.getQuantity(), reservation));
+            } catch (InsufficientStockException e) {
+                errors.add(new CartLineError(line.getProductId(), e.getReason()));
+            } catch (RuntimeException e) {
+                inventoryService.release(reservations);
+                throw e;
+            }
+        }
+
+        if (mutations.isEmpty()) {
+            return new CartBatchResult(getCart(userId), errors);
+        }
+        Cart cart = submit(userId, (current, patch) -> mutations.forEach(mutation -> mutation.apply(current, patch)),
+                null, reservations);
+        return new CartBatchResult(cart, errors);
     }
 
     public Cart updateCartItemQuantity(String userId, String productId, Integer quantity) {
-        Cart cart = getOrCreateCart(userId);
+        if (quantity == null || quantity < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "quantity must be zero or more");
+        }
+        if (quantity == 0) {
+            return removeItemFromCart(userId, productId);
+        }
+        Cart current = getCart(userId);
+        int index = CartMutations.indexOf(current, productId);
+        if (index < 0) {
+            return current;
+        }
 
-        cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .ifPresent(item -> item.setQuantity(quantity));
+        // Reserve any increase up front; the mutation works out what the line can give back
+        CartItem line = current.getItems().get(index);
+        int shortfall = quantity - CartMutations.reservedOf(line);
+        StockReservation extra = StockReservation.none(productId, line.getCategory());
+        if (shortfall > 0) {
+            Optional<Product> product = productService.getProductById(productId, line.getCategory());
+            if (product.isPresent()) {
+                extra = inventoryService.reserve(product.get(), shortfall);
+            }
+        }
 
-        return cartRepository.save(cart);
+        StockReleases released = new StockReleases();
+        Cart cart = submit(userId, CartMutations.setQuantity(productId, quantity, extra, released),
+                CompletableFuture.completedFuture(Optional.of(current)), List.of(extra));
+        inventoryService.release(released.entries());
+        return cart;
     }
 
     public Cart removeItemFromCart(String userId, String productId) {
-        Cart cart = getOrCreateCart(userId);
-        cart.getItems().removeIf(item -> item.getProductId().equals(productId));
-        return cartRepository.save(cart);
+        StockReleases released = new StockReleases();
+        Cart cart = mailbox.submit(userId, repricer.stamping(userId, CartMutations.removeItem(productId, released)));
+        inventoryService.release(released.entries());
+        return cart;
     }
 
     public void clearCart(String userId) {
-        Cart cart = getOrCreateCart(userId);
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        StockReleases released = new StockReleases();
+        mailbox.submit(userId, repricer.stamping(userId, CartMutations.clear(released)));
+        inventoryService.release(released.entries());
     }
 
     public Cart getCart(String userId) {
-        return getOrCreateCart(userId);
+        return mutationEngine.find(userId)
+                .map(repricer::reprice)
+                .orElseGet(() -> mutationEngine.emptyCart(userId));
+    }
+
+    /**
+     * Writes a change that carries freshly reserved stock, starting from the cart
+     * snapshot when one is available. If the store refused the write the
+     * reservations are returned, since no cart line holds them. If the outcome is
+     * unknown the cart is read again and only reservations no line holds are
+     * returned; returning units a line still holds would let them be released twice.
+     */
+    private Cart submit(String userId, CartMutation mutation,
+                        CompletableFuture<Optional<Cart>> cartRead, List<StockReservation> reservations) {
+        Optional<Cart> snapshot = null;
+        if (cartRead != null) {
+            try {
+                snapshot = cartRead.join();
+            } catch (CompletionException e) {
+                // The prefetch failed; let the write path read the cart itself
+            }
+        }
+        CartMutation stamped = repricer.stamping(userId, mutation);
+        try {
+            return snapshot != null ? mailbox.submit(userId, stamped, snapshot) : mailbox.submit(userId, stamped);
+        } catch (RuntimeException e) {
+            if (CosmosErrors.isRejected(e)) {
+                inventoryService.release(reservations);
+            } else {
+                releaseUnlessHeld(userId, reservations);
+            }
+            throw e;
+        }
+    }
+
+    private void releaseUnlessHeld(String userId, List<StockReservation> reservations) {
+        Optional<Cart> cart;
+        try {
+            cart = mutationEngine.find(userId);
+        } catch (RuntimeException e) {
+            log.error("Cart write for user {} has an unknown outcome; keeping {} reservations",
+                    userId, reservations.size(), e);
+            return;
+        }
+        inventoryService.release(reservations.stream()
+                .filter(reservation -> cart.isEmpty() || !CartMutations.holds(cart.get(), reservation))
+                .toList());
     }
 }
@@ -0,0 +1,111 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.shopping.cart.model.CatalogCounter;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.CatalogCounterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Highest {@code priceChangedAt} this node has seen on any product. A product's
+ * {@code priceChangedAt} is moved forward whenever its price or name changes, so a
+ * cart checked against version {@code v} cannot hold a stale line while the
+ * catalog version is still {@code v}. The version is loaded from the store at
+ * startup and raised by every product this node writes, loads or receives from the
+ * change feed.
+ * <p>
+ * New versions are taken from a counter document in the store rather than from the
+ * clock, so a change made on any node is numbered above every version already
+ * handed out, however far apart the nodes' clocks are.
+ */
+@Component
+public class CatalogVersion {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogVersion.class);
+    private static final String LATEST_QUERY =
+            "SELECT VALUE MAX(c.priceChangedAt) FROM c WHERE IS_DEFINED(c.priceChangedAt)";
+    private static final PartitionKey COUNTER_KEY = new PartitionKey(CatalogCounter.CATALOG_VERSION);
+
+    private final CosmosContainer productContainer;
+    private final CatalogCounterRepository counterRepository;
+    private final CosmosTemplate cosmosTemplate;
+    private final AtomicLong version = new AtomicLong();
+
+    public CatalogVersion(@Qualifier("productContainer") CosmosContainer productContainer,
+                          CatalogCounterRepository counterRepository,
+                          CosmosTemplate cosmosTemplate) {
+        this.productContainer = productContainer;
+        this.counterRepository = counterRepository;
+        this.cosmosTemplate = cosmosTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            for (Long latest : productContainer.queryItems(LATEST_QUERY, new CosmosQueryRequestOptions(), Long.class)) {
+                if (latest != null) {
+                    version.accumulateAndGet(latest, Math::max);
+                }
+            }
+            log.info("Catalog version is {}", version.get());
+        } catch (RuntimeException e) {
+            log.warn("Failed to load the catalog version; carts are re-checked as products are read", e);
+        }
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Returns a {@code priceChangedAt} for a product whose price or name is being
+     * changed, by incrementing the stored counter. The version itself only moves
+     * once the saved product is observed.
+     */
+    public long next() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return counterRepository.save(CatalogCounter.CATALOG_VERSION, COUNTER_KEY, CatalogCounter.class,
+                                CosmosPatchOperations.create().increment("/value", 1),
+                                ProductService.withContent(new CosmosPatchItemRequestOptions()))
+                        .getValue();
+            } catch (RuntimeException e) {
+                if (CosmosErrors.statusCode(e) != CosmosErrors.NOT_FOUND || attempt > 1) {
+                    throw e;
+                }
+            }
+            createCounter();
+        }
+    }
+
+    public void observe(Product product) {
+        if (product.getPriceChangedAt() != null) {
+            version.accumulateAndGet(product.getPriceChangedAt(), Math::max);
+        }
+    }
+
+    // Created on first use above every version already in use, including clock-based ones from before the counter
+    private void createCounter() {
+        CatalogCounter counter = new CatalogCounter(CatalogCounter.CATALOG_VERSION,
+                Math.max(version.get(), System.currentTimeMillis()));
+        try {
+            cosmosTemplate.insert(CatalogCounter.CONTAINER_NAME, counter, COUNTER_KEY);
+        } catch (RuntimeException e) {
+            if (!CosmosErrors.isConflict(e)) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBatch;
+import com.azure.cosmos.models.CosmosBatchPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosBatchResponse;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Order;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Turns a cart into an order. Prices are checked against the stored products,
+ * stock not already held by the cart's reservations is taken, and then the order
+ * is created and the cart emptied in one transactional batch in the user's
+ * partition, conditional on the cart's ETag. Either both documents change or
+ * neither does; if the batch does not go through, the stock taken for it is
+ * returned.
+ */
+@Service
+public class CheckoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutService.class);
+
+    private final CartMutationEngine mutationEngine;
+    private final CartMutationMailbox mailbox;
+    private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final OrderRepository orderRepository;
+    private final CosmosContainer cartContainer;
+    private final int maxAttempts;
+    private final Counter placed;
+    private final Counter repriced;
+
+    public CheckoutService(CartMutationEngine mutationEngine,
+                           CartMutationMailbox mailbox,
+                           ProductService productService,
+                           InventoryService inventoryService,
+                           OrderRepository orderRepository,
+                           @Qualifier("cartContainer") CosmosContainer cartContainer,
+                           MeterRegistry meterRegistry,
+                           @Value("${cart.concurrency.max-attempts:5}") int maxAttempts) {
+        this.mutationEngine = mutationEngine;
+        this.mailbox = mailbox;
+        this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.orderRepository = orderRepository;
+        this.cartContainer = cartContainer;
+        this.maxAttempts = maxAttempts;
+        this.placed = meterRegistry.counter("checkout.orders");
+        this.repriced = meterRegistry.counter("checkout.repriced");
+    }
+
+    public Order checkout(String userId) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<Order> order = tryCheckout(userId);
+            if (order.isPresent()) {
+                placed.increment();
+                return order.get();
+            }
+            if (attempt >= maxAttempts) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Cart is being changed; try again");
+            }
+        }
+    }
+
+    public List<Order> getOrders(String userId) {
+        return orderRepository.findOrdersByUserId(userId);
+    }
+
+    public Optional<Order> getOrder(String userId, String orderId) {
+        return orderRepository.findById(orderId, new PartitionKey(userId))
+                .filter(order -> Order.TYPE.equals(order.getType()));
+    }
+
+    // Returns empty when the cart changed between reading it and the batch
+    private Optional<Order> tryCheckout(String userId) {
+        Cart cart = mutationEngine.find(userId)
+                .filter(found -> !found.getItems().isEmpty())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cart is empty"));
+
+        Map<String, Product> products = productService.getCurrentProductsByIds(
+                cart.getItems().stream().map(CartItem::getProductId).distinct().toList());
+        validatePrices(cart, products);
+
+        List<StockReservation> committed = commitStock(cart, products);
+        Order order = toOrder(cart);
+
+        CosmosBatch batch = CosmosBatch.createCosmosBatch(new PartitionKey(userId));
+        batch.createItemOperation(order);
+        batch.patchItemOperation(cart.getId(),
+                CosmosPatchOperations.create().set("/items", new ArrayList<CartItem>()),
+                new CosmosBatchPatchItemRequestOptions().setIfMatchETag(cart.get_etag()));
+
+        CosmosBatchResponse response;
+        try {
+            response = cartContainer.executeCosmosBatch(batch);
+        } catch (RuntimeException e) {
+            return recoverUnknownOutcome(order, committed, e);
+        }
+        if (response.isSuccessStatusCode()) {
+            return Optional.of(order);
+        }
+
+        inventoryService.release(committed);
+        if (response.getStatusCode() == CosmosErrors.PRECONDITION_FAILED) {
+            return Optional.empty();
+        }
+        throw new IllegalStateException("Checkout batch failed with status " + response.getStatusCode()
+                + ": " + response.getErrorMessage());
+    }
+
+    /**
+     * Rejects the checkout if any line's price or product no longer matches the
+     * catalog. Drifted prices are written back to the cart first so the user can
+     * review the new total and check out again.
+     */
+    private void validatePrices(Cart cart, Map<String, Product> products) {
+        for (CartItem item : cart.getItems()) {
+            if (!products.containsKey(item.getProductId())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Product " + item.getProductId() + " is no longer available");
+            }
+        }
+        boolean drifted = cart.getItems().stream().anyMatch(item ->
+                !Objects.equals(item.getPrice(), products.get(item.getProductId()).getPrice()));
+        if (drifted) {
+            repriced.increment();
+            mailbox.submit(cart.getUserId(), CartMutations.refreshPrices(products));
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Prices have changed; review the cart and check out again");
+        }
+    }
+
+    // Units already reserved on a line are taken; anything beyond that is reserved now
+    private List<StockReservation> commitStock(Cart cart, Map<String, Product> products) {
+        List<StockReservation> committed = new ArrayList<>();
+        try {
+            for (CartItem item : cart.getItems()) {
+                int unreserved = item.getQuantity() - CartMutations.reservedOf(item);
+                if (unreserved > 0) {
+                    committed.add(inventoryService.reserve(products.get(item.getProductId()), unreserved));
+                }
+            }
+        } catch (RuntimeException e) {
+            inventoryService.release(committed);
+            throw e;
+        }
+        return committed;
+    }
+
+    private Order toOrder(Cart cart) {
+        List<CartItem> items = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            items.add(new CartItem(item.getProductId(), item.getCategory(), item.getProductName(),
+                    item.getPrice(), item.getQuantity()));
+        }
+        return new Order("order-" + UUID.randomUUID(), cart.getUserId(), items, cart.getTotalAmount(),
+                System.currentTimeMillis());
+    }
+
+    // The batch may or may not have been applied; the order document decides
+    private Optional<Order> recoverUnknownOutcome(Order order, List<StockReservation> committed, RuntimeException failure) {
+        Optional<Order> stored;
+        try {
+            stored = getOrder(order.getUserId(), order.getId());
+        } catch (RuntimeException e) {
+            log.error("Checkout outcome for order {} unknown; keeping {} committed stock entries",
+                    order.getId(), committed.size(), e);
+            throw failure;
+        }
+        if (stored.isPresent()) {
+            return stored;
+        }
+        inventoryService.release(committed);
+        throw failure;
+    }
+}
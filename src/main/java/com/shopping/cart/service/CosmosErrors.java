@@ -0,0 +1,45 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosException;
+
+public final class CosmosErrors {
+
+    public static final int NOT_FOUND = 404;
+    public static final int CONFLICT = 409;
+    public static final int REQUEST_TIMEOUT = 408;
+    public static final int PRECONDITION_FAILED = 412;
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private CosmosErrors() {
+    }
+
+    public static int statusCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CosmosException cosmosException) {
+                return cosmosException.getStatusCode();
+            }
+        }
+        return -1;
+    }
+
+    public static boolean isConflict(Throwable error) {
+        return statusCode(error) == CONFLICT;
+    }
+
+    public static boolean isPreconditionFailed(Throwable error) {
+        return statusCode(error) == PRECONDITION_FAILED;
+    }
+
+    public static boolean isThrottled(Throwable error) {
+        return statusCode(error) == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Whether the store refused the request, so it was certainly not applied. A
+     * timeout, a server error or a failure without a status leaves the outcome open.
+     */
+    public static boolean isRejected(Throwable error) {
+        int status = statusCode(error);
+        return status >= 400 && status < 500 && status != REQUEST_TIMEOUT;
+    }
+}
@@ -0,0 +1,18 @@
+package com.shopping.cart.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class InsufficientStockException extends ResponseStatusException {
+
+    private final String productId;
+
+    public InsufficientStockException(String productId) {
+        super(HttpStatus.CONFLICT, "Insufficient stock for product " + productId);
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
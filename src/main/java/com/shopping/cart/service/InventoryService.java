@@ -0,0 +1,209 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserves and releases product stock. A reservation is a single conditional patch
+ * on the product document: decrement {@code stockQuantity} only if at least the
+ * requested quantity is left. The check and the decrement are applied atomically
+ * by the store, so concurrent buyers of the same product never oversell and never
+ * wait on each other in this process.
+ * <p>
+ * Products without a {@code stockQuantity} are not tracked and always succeed.
+ * Products whose stock is sharded are reserved against their
+ * {@link ShardedStockCounter} instead. When admission control is enabled, requests
+ * the {@link StockAdmissionController} already knows cannot succeed are rejected
+ * before any store call.
+ */
+@Service
+public class InventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
+    private static final String STOCK_PATH = "/stockQuantity";
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ShardedStockCounter shardedStock;
+    private final StockAdmissionController admission;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter released;
+
+    public InventoryService(ProductRepository productRepository,
+                            ProductService productService,
+                            ShardedStockCounter shardedStock,
+                            ObjectProvider<StockAdmissionController> admission,
+                            MeterRegistry meterRegistry,
+                            @Value("${cart.reservations.enabled:true}") boolean enabled,
+                            @Value("${cart.reservations.ttl-seconds:900}") long ttlSeconds) {
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.shardedStock = shardedStock;
+        this.admission = admission.getIfAvailable();
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.reserved = meterRegistry.counter("inventory.reservations", "outcome", "reserved");
+        this.rejected = meterRegistry.counter("inventory.reservations", "outcome", "rejected");
+        this.released = meterRegistry.counter("inventory.releases");
+    }
+
+    public StockReservation reserve(Product product, int quantity) {
+        if (!enabled || quantity <= 0) {
+            return StockReservation.none(product.getId(), product.getCategory());
+        }
+        if (!product.hasShardedStock() && product.getStockQuantity() == null) {
+            return StockReservation.none(product.getId(), product.getCategory());
+        }
+        if (admission != null && !admission.tryAdmit(product, quantity)) {
+            throw new InsufficientStockException(product.getId());
+        }
+
+        if (product.hasShardedStock()) {
+            return reserveFromShards(product, quantity);
+        }
+        try {
+            Product updated = productRepository.save(product.getId(), new PartitionKey(product.getCategory()),
+                    Product.class, adjustment(-quantity), atLeast(quantity));
+            productService.stockChanged(updated, updated.getStockQuantity() + quantity);
+            return reserved(product, quantity);
+        } catch (RuntimeException e) {
+            if (!CosmosErrors.isPreconditionFailed(e)) {
+                throw e;
+            }
+        }
+
+        // The product may have been cached before its stock was handed over to shards, which
+        // leaves the product itself with none; only the stored document can tell
+        Optional<Product> current = productService.getCurrentProduct(product.getId(), product.getCategory());
+        if (current.isPresent() && current.get().hasShardedStock()) {
+            return reserveFromShards(current.get(), quantity);
+        }
+        throw insufficient(product, quantity);
+    }
+
+    private StockReservation reserveFromShards(Product product, int quantity) {
+        if (!shardedStock.tryReserve(product, quantity)) {
+            throw insufficient(product, quantity);
+        }
+        return reserved(product, quantity);
+    }
+
+    /**
+     * Adds {@code delta} units to a product's stock, or takes them off when negative,
+     * as a relative patch so units held by carts and concurrent reservations are
+     * left intact. Returns the product with its available stock afterwards.
+     */
+    public Product adjustStock(String productId, int delta) {
+        Product product = productService.getProductById(productId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+        if (product.hasShardedStock()) {
+            if (delta > 0) {
+                shardedStock.release(product, delta);
+            } else if (delta < 0 && !shardedStock.tryReserve(product, -delta)) {
+                throw new InsufficientStockException(productId);
+            }
+        } else if (product.getStockQuantity() == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Stock of product " + productId + " is not tracked; set stockQuantity when creating it");
+        } else {
+            try {
+                Product updated = productRepository.save(productId, new PartitionKey(product.getCategory()),
+                        Product.class, adjustment(delta), atLeast(Math.max(0, -delta)));
+                productService.stockChanged(updated, updated.getStockQuantity() - delta);
+                product = updated;
+            } catch (RuntimeException e) {
+                if (CosmosErrors.isPreconditionFailed(e)) {
+                    throw new InsufficientStockException(productId);
+                }
+                throw e;
+            }
+        }
+        if (admission != null && delta > 0) {
+            admission.onReleased(productId, delta);
+        }
+        return productService.withCurrentStock(product);
+    }
+
+    /**
+     * Returns reserved stock. Failures are logged rather than thrown: the cart
+     * change that freed the stock has already been stored.
+     */
+    public void release(Collection<StockReservation> reservations) {
+        reservations.forEach(this::release);
+    }
+
+    public void release(StockReservation reservation) {
+        if (reservation.getQuantity() <= 0) {
+            return;
+        }
+        try {
+            // Stock goes back wherever the product keeps it now, which may differ from where it was taken
+            Optional<Product> product =
+                    productService.getCurrentProduct(reservation.getProductId(), reservation.getCategory());
+            if (product.isPresent() && product.get().hasShardedStock()) {
+                shardedStock.release(product.get(), reservation.getQuantity());
+            } else {
+                Product updated = productRepository.save(reservation.getProductId(),
+                        new PartitionKey(reservation.getCategory()), Product.class, adjustment(reservation.getQuantity()),
+                        ProductService.withContent(new CosmosPatchItemRequestOptions()));
+                productService.stockChanged(updated, updated.getStockQuantity() - reservation.getQuantity());
+            }
+            released.increment();
+            if (admission != null) {
+                admission.onReleased(reservation.getProductId(), reservation.getQuantity());
+            }
+        } catch (RuntimeException e) {
+            if (CosmosErrors.statusCode(e) == CosmosErrors.NOT_FOUND) {
+                log.debug("Product {} no longer exists; dropping release of {} units",
+                        reservation.getProductId(), reservation.getQuantity());
+            } else {
+                log.error("Failed to release {} units of product {}",
+                        reservation.getQuantity(), reservation.getProductId(), e);
+            }
+        }
+    }
+
+    static CosmosPatchOperations adjustment(int delta) {
+        return CosmosPatchOperations.create().increment(STOCK_PATH, delta);
+    }
+
+    // Applied by the store together with the patch, so stock can never go below zero
+    static CosmosPatchItemRequestOptions atLeast(int quantity) {
+        CosmosPatchItemRequestOptions options = ProductService.withContent(new CosmosPatchItemRequestOptions());
+        options.setFilterPredicate("FROM p WHERE p.stockQuantity >= " + quantity);
+        return options;
+    }
+
+    private StockReservation reserved(Product product, int quantity) {
+        reserved.increment();
+        return new StockReservation(product.getId(), product.getCategory(), quantity,
+                System.currentTimeMillis() + ttlMillis);
+    }
+
+    private InsufficientStockException insufficient(Product product, int quantity) {
+        rejected.increment();
+        if (admission != null) {
+            admission.onRejected(product.getId(), quantity);
+        }
+        return new InsufficientStockException(product.getId());
+    }
+}
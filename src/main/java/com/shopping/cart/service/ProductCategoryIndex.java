@@ -0,0 +1,165 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Products grouped by category, held as immutable arrays. A change copies the
+ * affected category's array and swaps it in, so readers never lock or copy.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "products.category-index.enabled", havingValue = "true")
+public class ProductCategoryIndex implements ProductChangeListener {
+
+    private static final Product[] EMPTY = new Product[0];
+
+    private final Map<String, Product[]> productsByCategory = new ConcurrentHashMap<>();
+    private Map<String, String> categoryById = new HashMap<>();
+    private Map<String, List<Product>> rebuiltGroups;
+    private Map<String, String> rebuiltCategoryById;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Product> get(String category) {
+        Product[] products = productsByCategory.getOrDefault(category, EMPTY);
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    @Override
+    public void beginRebuild() {
+        rebuiltGroups = new HashMap<>();
+        rebuiltCategoryById = new HashMap<>();
+    }
+
+    @Override
+    public void rebuildPage(List<Product> page) {
+        for (Product product : page) {
+            rebuiltGroups.computeIfAbsent(product.getCategory(), category -> new ArrayList<>()).add(product);
+            rebuiltCategoryById.put(product.getId(), product.getCategory());
+        }
+    }
+
+    @Override
+    public void finishRebuild() {
+        productsByCategory.keySet().retainAll(rebuiltGroups.keySet());
+        rebuiltGroups.forEach((category, products) -> productsByCategory.put(category, products.toArray(EMPTY)));
+        categoryById = rebuiltCategoryById;
+        abortRebuild();
+        ready = true;
+    }
+
+    @Override
+    public void abortRebuild() {
+        rebuiltGroups = null;
+        rebuiltCategoryById = null;
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        String previousCategory = categoryById.put(product.getId(), product.getCategory());
+        if (previousCategory != null && !previousCategory.equals(product.getCategory())) {
+            without(previousCategory, product.getId());
+        }
+
+        Product[] current = productsByCategory.getOrDefault(product.getCategory(), EMPTY);
+        int index = indexOf(current, product.getId());
+        Product[] updated;
+        if (index >= 0) {
+            updated = current.clone();
+            updated[index] = product;
+        } else {
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = product;
+        }
+        productsByCategory.put(product.getCategory(), updated);
+    }
+
+    // Each affected category is copied once for the whole batch
+    @Override
+    public void productsSaved(List<Product> products) {
+        Map<String, Product> saved = new LinkedHashMap<>();
+        Set<String> affected = new HashSet<>();
+        for (Product product : products) {
+            saved.put(product.getId(), product);
+            affected.add(product.getCategory());
+            String previousCategory = categoryById.put(product.getId(), product.getCategory());
+            if (previousCategory != null) {
+                affected.add(previousCategory);
+            }
+        }
+
+        for (String category : affected) {
+            List<Product> updated = new ArrayList<>();
+            Set<String> placed = new HashSet<>();
+            for (Product existing : productsByCategory.getOrDefault(category, EMPTY)) {
+                Product replacement = saved.get(existing.getId());
+                if (replacement == null) {
+                    updated.add(existing);
+                } else if (replacement.getCategory().equals(category)) {
+                    updated.add(replacement);
+                    placed.add(existing.getId());
+                }
+            }
+            for (Product product : saved.values()) {
+                if (product.getCategory().equals(category) && !placed.contains(product.getId())) {
+                    updated.add(product);
+                }
+            }
+            if (updated.isEmpty()) {
+                productsByCategory.remove(category);
+            } else {
+                productsByCategory.put(category, updated.toArray(EMPTY));
+            }
+        }
+    }
+
+    @Override
+    public void productDeleted(String id) {
+        String category = categoryById.remove(id);
+        if (category != null) {
+            without(category, id);
+        }
+    }
+
+    private void without(String category, String id) {
+        Product[] current = productsByCategory.getOrDefault(category, EMPTY);
+        int index = indexOf(current, id);
+        if (index < 0) {
+            return;
+        }
+        if (current.length == 1) {
+            productsByCategory.remove(category);
+            return;
+        }
+        Product[] updated = new Product[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        productsByCategory.put(category, updated);
+    }
+
+    private static int indexOf(Product[] products, String id) {
+        for (int i = 0; i < products.length; i++) {
+            if (products[i].getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+
+import java.util.List;
+
+/**
+ * In-memory read model kept current by {@link ProductService}. Callbacks are
+ * delivered one at a time, so implementations need no locking of their own
+ * beyond publishing their state safely to readers.
+ *
+ * <p>A rebuild is fed one catalog page at a time into new state built off to
+ * the side; readers keep seeing the current state until {@link #finishRebuild()}
+ * swaps it in. No saves or deletes are delivered between
+ * {@link #beginRebuild()} and the matching finish or abort.
+ */
+public interface ProductChangeListener {
+
+    void beginRebuild();
+
+    void rebuildPage(List<Product> page);
+
+    void finishRebuild();
+
+    void abortRebuild();
+
+    void productSaved(Product product);
+
+    default void productsSaved(List<Product> products) {
+        products.forEach(this::productSaved);
+    }
+
+    void productDeleted(String id);
+}
@@ -0,0 +1,430 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBulkItemRequestOptions;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosBulkPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.ProductImportError;
+import com.shopping.cart.model.ProductImportReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams NDJSON or CSV product rows from a request body into the products
+ * container. Rows are validated as they are read, buffered per category so each
+ * bulk request targets one partition, and written by a bounded number of
+ * concurrent bulk calls. Throttled rows are retried after a shared back-off that
+ * grows on 429s and decays on clean batches.
+ */
+@Service
+public class ProductImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_THROTTLE_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long PROGRESS_INTERVAL = 10_000;
+
+    private final CosmosContainer productContainer;
+    private final ProductService productService;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService importExecutor;
+    private final int batchSize;
+    private final int parallelism;
+    private final Counter importedRows;
+    private final Counter failedRows;
+    private final Counter throttledRows;
+
+    private final AtomicLong backoffMillis = new AtomicLong();
+
+    public ProductImportService(@Qualifier("productContainer") CosmosContainer productContainer,
+                                ProductService productService,
+                                CatalogVersion catalogVersion,
+                                ObjectMapper objectMapper,
+                                @Qualifier("importExecutor") ExecutorService importExecutor,
+                                MeterRegistry meterRegistry,
+                                @Value("${products.import.batch-size:100}") int batchSize,
+                                @Value("${products.import.parallelism:8}") int parallelism) {
+        this.productContainer = productContainer;
+        this.productService = productService;
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+        this.importExecutor = importExecutor;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.importedRows = meterRegistry.counter("products.import.rows", "outcome", "imported");
+        this.failedRows = meterRegistry.counter("products.import.rows", "outcome", "failed");
+        this.throttledRows = meterRegistry.counter("products.import.rows", "outcome", "throttled");
+    }
+
+    public ProductImportReport importProducts(InputStream input, Format format) throws IOException {
+        Run run = new Run();
+        Map<String, List<Row>> pending = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+
+                run.received.incrementAndGet();
+                Row row;
+                try {
+                    Product product = format == Format.CSV ? fromCsv(header, parseCsvLine(line)) : fromJson(line);
+                    row = new Row(lineNumber, validate(product));
+                } catch (IllegalArgumentException e) {
+                    run.fail(lineNumber, null, e.getMessage());
+                    continue;
+                }
+
+                List<Row> rows = pending.computeIfAbsent(row.product.getCategory(), category -> new ArrayList<>());
+                rows.add(row);
+                if (rows.size() >= batchSize) {
+                    submit(run, pending.remove(row.product.getCategory()));
+                }
+                if (run.received.get() % PROGRESS_INTERVAL == 0) {
+                    log.info("Product import progress: {} received, {} imported, {} failed",
+                            run.received.get(), run.imported.get(), run.failed.get());
+                }
+            }
+        } finally {
+            pending.values().forEach(rows -> submit(run, rows));
+            run.awaitCompletion();
+        }
+
+        ProductImportReport report = run.report();
+        log.info("Product import finished: {} received, {} imported, {} failed in {} ms",
+                report.getReceived(), report.getImported(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+
+    private void submit(Run run, List<Row> rows) {
+        run.inFlight.acquireUninterruptibly();
+        try {
+            importExecutor.execute(() -> {
+                try {
+                    write(run, rows);
+                } catch (RuntimeException e) {
+                    rows.forEach(row -> run.fail(row.line, row.product.getId(), e.getMessage()));
+                } finally {
+                    run.inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            run.inFlight.release();
+            throw e;
+        }
+    }
+
+    private void write(Run run, List<Row> rows) {
+        // One version covers the batch; an existing product keeps its own unless the row changes its price or name
+        long version = catalogVersion.next();
+        rows.forEach(row -> {
+            row.version = version;
+            row.product.setPriceChangedAt(version);
+        });
+        List<Row> remaining = rows;
+        List<Product> written = new ArrayList<>(rows.size());
+        try {
+            for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+                pause(backoffMillis.get());
+
+                List<CosmosItemOperation> operations = new ArrayList<>(remaining.size());
+                for (Row row : remaining) {
+                    operations.add(operation(row));
+                }
+
+                List<Row> throttled = new ArrayList<>();
+                List<Row> retried = new ArrayList<>();
+                Duration retryAfter = Duration.ZERO;
+                Iterable<CosmosBulkOperationResponse<Row>> responses =
+                        productContainer.executeBulkOperations(operations);
+                for (CosmosBulkOperationResponse<Row> response : responses) {
+                    Row row = response.getOperation().getContext();
+                    if (response.getResponse() != null && response.getResponse().isSuccessStatusCode()) {
+                        run.imported.incrementAndGet();
+                        importedRows.increment();
+                        Product stored = response.getResponse().getItem(Product.class);
+                        written.add(stored != null ? stored : row.product);
+                    } else if (switchesOperation(row, response) && attempt < MAX_THROTTLE_ATTEMPTS) {
+                        retried.add(row);
+                    } else if (isThrottled(response) && attempt < MAX_THROTTLE_ATTEMPTS) {
+                        throttled.add(row);
+                        throttledRows.increment();
+                        Duration hint = response.getResponse().getRetryAfterDuration();
+                        if (hint != null && hint.compareTo(retryAfter) > 0) {
+                            retryAfter = hint;
+                        }
+                    } else {
+                        run.fail(row.line, row.product.getId(), failureMessage(response));
+                    }
+                }
+
+                adjustBackoff(!throttled.isEmpty(), retryAfter);
+                throttled.addAll(retried);
+                remaining = throttled;
+            }
+        } finally {
+            productService.refreshAll(written);
+        }
+    }
+
+    // Existing products are patched so the stock held by carts and any shard layout survive a re-import;
+    // only a product created by the import takes the row's stockQuantity
+    private CosmosItemOperation operation(Row row) {
+        PartitionKey partitionKey = new PartitionKey(row.product.getCategory());
+        if (row.create) {
+            return CosmosBulkOperations.getCreateItemOperation(row.product, partitionKey,
+                    new CosmosBulkItemRequestOptions(), row);
+        }
+        CosmosBulkPatchItemRequestOptions options = new CosmosBulkPatchItemRequestOptions()
+                .setContentResponseOnWriteEnabled(true);
+        if (row.product.getPriceChangedAt() != null) {
+            // Only a row that changes the price or name moves the product's version, so carts are not re-checked
+            // for a re-import of an unchanged catalog
+            options.setFilterPredicate("FROM p WHERE NOT (IS_DEFINED(p.price) AND IS_DEFINED(p.name) AND p.price = "
+                    + BigDecimal.valueOf(row.product.getPrice()).toPlainString()
+                    + " AND p.name = " + literal(row.product.getName()) + ")");
+        }
+        return CosmosBulkOperations.getPatchItemOperation(row.product.getId(), partitionKey,
+                ProductService.detailsPatch(row.product), options, row);
+    }
+
+    // A JSON string is also a valid query string literal, with any quotes in it escaped
+    private String literal(String value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid value: " + value, e);
+        }
+    }
+
+    /**
+     * A patch of a missing product becomes a create, and a create that lost a race
+     * becomes a patch. A versioned patch the filter turned down (price and name as
+     * stored) is sent again without the version.
+     */
+    private static boolean switchesOperation(Row row, CosmosBulkOperationResponse<Row> response) {
+        if (response.getResponse() == null) {
+            return false;
+        }
+        int status = response.getResponse().getStatusCode();
+        if ((!row.create && status == CosmosErrors.NOT_FOUND) || (row.create && status == CosmosErrors.CONFLICT)) {
+            row.create = !row.create;
+            row.product.setPriceChangedAt(row.version);
+            return true;
+        }
+        if (!row.create && status == CosmosErrors.PRECONDITION_FAILED && row.product.getPriceChangedAt() != null) {
+            row.product.setPriceChangedAt(null);
+            return true;
+        }
+        return false;
+    }
+
+    private void adjustBackoff(boolean throttled, Duration retryAfter) {
+        if (throttled) {
+            backoffMillis.updateAndGet(current ->
+                    Math.min(MAX_BACKOFF_MILLIS, Math.max(Math.max(current * 2, 50), retryAfter.toMillis())));
+        } else {
+            backoffMillis.updateAndGet(current -> current / 2);
+        }
+    }
+
+    private static boolean isThrottled(CosmosBulkOperationResponse<Row> response) {
+        return response.getResponse() != null
+                && response.getResponse().getStatusCode() == CosmosErrors.TOO_MANY_REQUESTS;
+    }
+
+    private static String failureMessage(CosmosBulkOperationResponse<Row> response) {
+        if (response.getException() != null) {
+            return response.getException().getMessage();
+        }
+        return "Write failed with status " + response.getResponse().getStatusCode();
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    private Product fromJson(String line) {
+        try {
+            return objectMapper.readValue(line, Product.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static Product fromCsv(List<String> header, List<String> values) {
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " columns but found " + values.size());
+        }
+        Product product = new Product();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            switch (header.get(i).trim()) {
+                case "id" -> product.setId(value);
+                case "category" -> product.setCategory(value);
+                case "name" -> product.setName(value);
+                case "description" -> product.setDescription(value);
+                case "price" -> product.setPrice(value == null ? null : parseNumber(value, "price"));
+                case "stockQuantity" -> product.setStockQuantity(
+                        value == null ? null : (int) parseNumber(value, "stockQuantity"));
+                default -> {
+                }
+            }
+        }
+        return product;
+    }
+
+    private static double parseNumber(String value, String column) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+
+    private static Product validate(Product product) {
+        if (isBlank(product.getId())) {
+            throw new IllegalArgumentException("id is required");
+        }
+        if (isBlank(product.getCategory())) {
+            throw new IllegalArgumentException("category is required");
+        }
+        if (isBlank(product.getName())) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (product.getPrice() == null || product.getPrice() < 0) {
+            throw new IllegalArgumentException("price must be zero or more");
+        }
+        if (product.getStockQuantity() != null && product.getStockQuantity() < 0) {
+            throw new IllegalArgumentException("stockQuantity must be zero or more");
+        }
+        return product;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // RFC 4180 style: comma separated, fields optionally quoted, "" escapes a quote
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static final class Row {
+
+        private final long line;
+        private final Product product;
+        private boolean create;
+        private long version;
+
+        private Row(long line, Product product) {
+            this.line = line;
+            this.product = product;
+        }
+    }
+
+    private final class Run {
+
+        private final long startedAt = System.nanoTime();
+        private final Semaphore inFlight = new Semaphore(parallelism);
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Queue<ProductImportError> errors = new ConcurrentLinkedQueue<>();
+
+        private void fail(long line, String productId, String message) {
+            failedRows.increment();
+            if (failed.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportError(line, productId, message));
+            }
+        }
+
+        private void awaitCompletion() {
+            inFlight.acquireUninterruptibly(parallelism);
+            inFlight.release(parallelism);
+        }
+
+        private ProductImportReport report() {
+            return new ProductImportReport(
+                    received.get(),
+                    imported.get(),
+                    failed.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                    new ArrayList<>(errors));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Per-category products sorted by price, held as parallel arrays. Range lookups
+ * binary-search the primitive price array and then walk forward, so a query costs
+ * O(log n + k). Changes copy the affected category and swap it in atomically.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "products.price-index.enabled", havingValue = "true")
+public class ProductPriceIndex implements ProductChangeListener {
+
+    private final Map<String, Sorted> byCategory = new ConcurrentHashMap<>();
+    private Map<String, String> categoryById = new HashMap<>();
+    private Map<String, List<Product>> rebuiltGroups;
+    private Map<String, String> rebuiltCategoryById;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Stream<Product> range(String category, double minPrice, double maxPrice) {
+        Sorted sorted = byCategory.getOrDefault(category, Sorted.EMPTY);
+        int from = sorted.lowerBound(minPrice);
+        int to = sorted.upperBound(maxPrice);
+        return IntStream.range(from, Math.max(from, to)).mapToObj(i -> sorted.products[i]);
+    }
+
+    @Override
+    public void beginRebuild() {
+        rebuiltGroups = new HashMap<>();
+        rebuiltCategoryById = new HashMap<>();
+    }
+
+    @Override
+    public void rebuildPage(List<Product> page) {
+        for (Product product : page) {
+            if (product.getPrice() != null) {
+                rebuiltGroups.computeIfAbsent(product.getCategory(), category -> new ArrayList<>()).add(product);
+                rebuiltCategoryById.put(product.getId(), product.getCategory());
+            }
+        }
+    }
+
+    @Override
+    public void finishRebuild() {
+        byCategory.keySet().retainAll(rebuiltGroups.keySet());
+        rebuiltGroups.forEach((category, products) -> byCategory.put(category, Sorted.of(products)));
+        categoryById = rebuiltCategoryById;
+        abortRebuild();
+        ready = true;
+    }
+
+    @Override
+    public void abortRebuild() {
+        rebuiltGroups = null;
+        rebuiltCategoryById = null;
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        productDeleted(product.getId());
+        if (product.getPrice() == null) {
+            return;
+        }
+        categoryById.put(product.getId(), product.getCategory());
+        byCategory.put(product.getCategory(),
+                byCategory.getOrDefault(product.getCategory(), Sorted.EMPTY).with(product));
+    }
+
+    // Each affected category is re-sorted once for the whole batch
+    @Override
+    public void productsSaved(List<Product> products) {
+        Map<String, Product> saved = new LinkedHashMap<>();
+        Set<String> affected = new HashSet<>();
+        for (Product product : products) {
+            saved.put(product.getId(), product);
+            String previousCategory = categoryById.remove(product.getId());
+            if (previousCategory != null) {
+                affected.add(previousCategory);
+            }
+            if (product.getPrice() != null) {
+                categoryById.put(product.getId(), product.getCategory());
+                affected.add(product.getCategory());
+            }
+        }
+
+        for (String category : affected) {
+            Sorted current = byCategory.getOrDefault(category, Sorted.EMPTY);
+            List<Product> updated = new ArrayList<>(current.size() + saved.size());
+            for (Product existing : current.products) {
+                if (!saved.containsKey(existing.getId())) {
+                    updated.add(existing);
+                }
+            }
+            for (Product product : saved.values()) {
+                if (product.getPrice() != null && product.getCategory().equals(category)) {
+                    updated.add(product);
+                }
+            }
+            if (updated.isEmpty()) {
+                byCategory.remove(category);
+            } else {
+                byCategory.put(category, Sorted.of(updated));
+            }
+        }
+    }
+
+    @Override
+    public void productDeleted(String id) {
+        String category = categoryById.remove(id);
+        if (category == null) {
+            return;
+        }
+        Sorted remaining = byCategory.getOrDefault(category, Sorted.EMPTY).without(id);
+        if (remaining.size() == 0) {
+            byCategory.remove(category);
+        } else {
+            byCategory.put(category, remaining);
+        }
+    }
+
+    private static final class Sorted {
+
+        private static final Sorted EMPTY = new Sorted(new double[0], new String[0], new Product[0]);
+
+        private final double[] prices;
+        private final String[] ids;
+        private final Product[] products;
+
+        private Sorted(double[] prices, String[] ids, Product[] products) {
+            this.prices = prices;
+            this.ids = ids;
+            this.products = products;
+        }
+
+        private static Sorted of(List<Product> products) {
+            List<Product> ordered = new ArrayList<>(products);
+            ordered.sort(Comparator.comparingDouble(Product::getPrice));
+            int size = ordered.size();
+            double[] prices = new double[size];
+            String[] ids = new String[size];
+            Product[] sortedProducts = new Product[size];
+            for (int i = 0; i < size; i++) {
+                sortedProducts[i] = ordered.get(i);
+                prices[i] = sortedProducts[i].getPrice();
+                ids[i] = sortedProducts[i].getId();
+            }
+            return new Sorted(prices, ids, sortedProducts);
+        }
+
+        private int size() {
+            return prices.length;
+        }
+
+        // first index whose price is >= price
+        private int lowerBound(double price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // first index whose price is > price
+        private int upperBound(double price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] <= price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private Sorted with(Product product) {
+            int at = upperBound(product.getPrice());
+            int size = size();
+            double[] newPrices = new double[size + 1];
+            String[] newIds = new String[size + 1];
+            Product[] newProducts = new Product[size + 1];
+
+            System.arraycopy(prices, 0, newPrices, 0, at);
+            System.arraycopy(ids, 0, newIds, 0, at);
+            System.arraycopy(products, 0, newProducts, 0, at);
+            newPrices[at] = product.getPrice();
+            newIds[at] = product.getId();
+            newProducts[at] = product;
+            System.arraycopy(prices, at, newPrices, at + 1, size - at);
+            System.arraycopy(ids, at, newIds, at + 1, size - at);
+            System.arraycopy(products, at, newProducts, at + 1, size - at);
+            return new Sorted(newPrices, newIds, newProducts);
+        }
+
+        private Sorted without(String id) {
+            int at = -1;
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at < 0) {
+                return this;
+            }
+
+            int size = size();
+            double[] newPrices = new double[size - 1];
+            String[] newIds = new String[size - 1];
+            Product[] newProducts = new Product[size - 1];
+            System.arraycopy(prices, 0, newPrices, 0, at);
+            System.arraycopy(ids, 0, newIds, 0, at);
+            System.arraycopy(products, 0, newProducts, 0, at);
+            System.arraycopy(prices, at + 1, newPrices, at, size - at - 1);
+            System.arraycopy(ids, at + 1, newIds, at, size - at - 1);
+            System.arraycopy(products, at + 1, newProducts, at, size - at - 1);
+            return new Sorted(newPrices, newIds, newProducts);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over product name and description. Tokens are kept in a sorted
+ * map so the last query term can be matched as a prefix for typeahead.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "products.search.enabled", havingValue = "true")
+public class ProductSearchIndex implements ProductChangeListener {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private volatile Index current = new Index();
+    private Index building;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Product> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        boolean prefixLast = !Character.isWhitespace(query.charAt(query.length() - 1));
+        String prefix = prefixLast ? terms.get(terms.size() - 1) : null;
+        List<String> exactTerms = prefixLast ? terms.subList(0, terms.size() - 1) : terms;
+
+        Index index = current;
+        TopMatches top = new TopMatches(limit);
+        if (exactTerms.isEmpty()) {
+            // Typeahead on a single prefix: walk its postings without merging them
+            for (Set<String> ids : index.prefixed(prefix)) {
+                ids.forEach(id -> top.offer(index.productsById.get(id)));
+            }
+            return top.sorted();
+        }
+
+        List<Set<String>> postings = new ArrayList<>(exactTerms.size());
+        for (String term : exactTerms) {
+            postings.add(index.exact(term));
+        }
+        // Drive from the rarest term and probe the others, instead of intersecting whole sets
+        postings.sort(Comparator.comparingInt(Set::size));
+        for (String id : postings.get(0)) {
+            if (postings.stream().skip(1).allMatch(ids -> ids.contains(id))
+                    && (prefix == null || index.hasPrefixed(id, prefix))) {
+                top.offer(index.productsById.get(id));
+            }
+        }
+        return top.sorted();
+    }
+
+    @Override
+    public void beginRebuild() {
+        building = new Index();
+    }
+
+    @Override
+    public void rebuildPage(List<Product> page) {
+        page.forEach(building::index);
+    }
+
+    @Override
+    public void finishRebuild() {
+        current = building;
+        building = null;
+        ready = true;
+    }
+
+    @Override
+    public void abortRebuild() {
+        building = null;
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        Index index = current;
+        index.unindex(product.getId());
+        index.index(product);
+    }
+
+    @Override
+    public void productDeleted(String id) {
+        current.unindex(id);
+    }
+
+    private static final class Index {
+
+        private final ConcurrentSkipListMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+        private final Map<String, Product> productsById = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> tokensById = new ConcurrentHashMap<>();
+
+        void index(Product product) {
+            Set<String> tokens = new HashSet<>(tokenize(product.getName()));
+            tokens.addAll(tokenize(product.getDescription()));
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(product.getId());
+            }
+            tokensById.put(product.getId(), tokens);
+            productsById.put(product.getId(), product);
+        }
+
+        void unindex(String id) {
+            Set<String> tokens = tokensById.remove(id);
+            if (tokens == null) {
+                return;
+            }
+            productsById.remove(id);
+            for (String token : tokens) {
+                postings.computeIfPresent(token, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+
+        Set<String> exact(String term) {
+            return postings.getOrDefault(term, Set.of());
+        }
+
+        Collection<Set<String>> prefixed(String prefix) {
+            return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values();
+        }
+
+        boolean hasPrefixed(String id, String prefix) {
+            Set<String> tokens = tokensById.get(id);
+            return tokens != null && tokens.stream().anyMatch(token -> token.startsWith(prefix));
+        }
+    }
+
+    /**
+     * The first {@code limit} products by name among those offered, kept in a heap
+     * whose head is the last of them, so a match costs {@code O(log limit)} and
+     * the full match list is never sorted.
+     */
+    private static final class TopMatches {
+
+        private static final Comparator<Product> BY_NAME = Comparator
+                .comparing((Product product) -> String.valueOf(product.getName()), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Product::getId);
+
+        private final int limit;
+        private final PriorityQueue<Product> heap;
+        private final Set<String> ids = new HashSet<>();
+
+        TopMatches(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024), BY_NAME.reversed());
+        }
+
+        void offer(Product product) {
+            // A product is offered once per matching token; skip it if it is already kept
+            if (product == null || ids.contains(product.getId())) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(product);
+                ids.add(product.getId());
+            } else if (BY_NAME.compare(product, heap.peek()) < 0) {
+                ids.remove(heap.poll().getId());
+                heap.add(product);
+                ids.add(product.getId());
+            }
+        }
+
+        List<Product> sorted() {
+            List<Product> products = new ArrayList<>(heap);
+            products.sort(BY_NAME);
+            return products;
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,46 +1,687 @@
 package com.shopping.cart.service;
 
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosItemIdentity;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.azure.spring.data.cosmos.core.query.CosmosPageRequest;
+import com.azure.spring.data.cosmos.core.query.CosmosQuery;
+import com.azure.spring.data.cosmos.core.query.Criteria;
+import com.azure.spring.data.cosmos.core.query.CriteriaType;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.shopping.cart.model.Product;
 import com.shopping.cart.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
 
+    private static final Logger log = LoggerFactory.getLogger(ProductService.class);
+    private static final int WARM_UP_PAGE_SIZE = 1000;
+
     private final ProductRepository productRepository;
+    private final CosmosTemplate cosmosTemplate;
+    private final CosmosContainer productContainer;
+    private final ShardedStockCounter shardedStock;
+    private final CatalogVersion catalogVersion;
+
+    // id -> category routing so lookups by id can be single-partition point reads; bounded,
+    // since catalog scans pass every product through it. A missing entry costs a cross-partition read
+    private final Cache<String, String> categoryById;
+
+    private final AsyncCache<String, Product> productsById;
+    private final AsyncCache<String, List<Product>> productsByCategory;
 
-    public ProductService(ProductRepository productRepository) {
+    private final List<ProductChangeListener> readModels;
+    private final ProductCategoryIndex categoryIndex;
+    private final ProductSearchIndex searchIndex;
+    private final ProductPriceIndex priceIndex;
+    // serializes read-model updates; while a rebuild scans the catalog they queue up in deferredChanges
+    private final ReentrantLock readModelLock = new ReentrantLock();
+    private List<Consumer<ProductChangeListener>> deferredChanges;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public ProductService(ProductRepository productRepository,
+                          CosmosTemplate cosmosTemplate,
+                          @Qualifier("productContainer") CosmosContainer productContainer,
+                          ShardedStockCounter shardedStock,
+                          CatalogVersion catalogVersion,
+                          MeterRegistry meterRegistry,
+                          ObjectProvider<ProductChangeListener> readModels,
+                          ObjectProvider<ProductCategoryIndex> categoryIndex,
+                          ObjectProvider<ProductSearchIndex> searchIndex,
+                          ObjectProvider<ProductPriceIndex> priceIndex,
+                          @Value("${products.cache.max-size:10000}") long cacheMaxSize,
+                          @Value("${products.cache.ttl-seconds:300}") long cacheTtlSeconds,
+                          @Value("${products.routing.max-size:100000}") long routingMaxSize) {
         this.productRepository = productRepository;
+        this.cosmosTemplate = cosmosTemplate;
+        this.productContainer = productContainer;
+        this.shardedStock = shardedStock;
+        this.catalogVersion = catalogVersion;
+        this.categoryById = Caffeine.newBuilder()
+                .maximumSize(routingMaxSize)
+                .build();
+        this.productsById = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(cacheMaxSize)
+                        .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                        .recordStats()
+                        .<String, Product>buildAsync(),
+                "products.byId");
+        this.productsByCategory = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(Math.max(cacheMaxSize / 100, 100))
+                        .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                        .recordStats()
+                        .<String, List<Product>>buildAsync(),
+                "products.byCategory");
+        this.readModels = readModels.orderedStream().toList();
+        this.categoryIndex = categoryIndex.getIfAvailable();
+        this.searchIndex = searchIndex.getIfAvailable();
+        this.priceIndex = priceIndex.getIfAvailable();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpReadModels() {
+        rebuildReadModels();
     }
 
+    // The change feed carries no deletes, so products deleted on other nodes only drop out here
+    @Scheduled(initialDelayString = "${products.read-models.rebuild-interval-millis:3600000}",
+            fixedDelayString = "${products.read-models.rebuild-interval-millis:3600000}")
+    public void rebuildReadModels() {
+        if (readModels.isEmpty() || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        readModelLock.lock();
+        try {
+            deferredChanges = new ArrayList<>();
+            readModels.forEach(ProductChangeListener::beginRebuild);
+        } finally {
+            readModelLock.unlock();
+        }
+
+        boolean complete = false;
+        try {
+            long[] scanned = {0};
+            forEachPage(WARM_UP_PAGE_SIZE, page -> {
+                readModels.forEach(readModel -> readModel.rebuildPage(page));
+                scanned[0] += page.size();
+            });
+            complete = true;
+            log.info("Rebuilt {} product read models from {} products", readModels.size(), scanned[0]);
+        } catch (RuntimeException e) {
+            log.warn("Product read model rebuild failed; keeping the previous state", e);
+        } finally {
+            readModelLock.lock();
+            try {
+                for (ProductChangeListener readModel : readModels) {
+                    if (complete) {
+                        readModel.finishRebuild();
+                    } else {
+                        readModel.abortRebuild();
+                    }
+                }
+                // a write during the scan may have landed on a page already read, so replay them all in order
+                deferredChanges.forEach(readModels::forEach);
+                deferredChanges = null;
+            } finally {
+                readModelLock.unlock();
+                rebuilding.set(false);
+            }
+        }
+    }
+
+    /**
+     * Creates a product that does not exist yet. The store only enforces unique ids
+     * within a category, so an id in use under any category is refused with
+     * {@code 409}, as is a create racing another for the same id and category.
+     */
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        requireIdAndCategory(product);
+        if (getCurrentProduct(product.getId(), product.getCategory()).isPresent()) {
+            throw alreadyExists(product.getId());
+        }
+        product.setPriceChangedAt(catalogVersion.next());
+        Product saved;
+        try {
+            saved = cosmosTemplate.insert(cosmosTemplate.getContainerName(Product.class), product,
+                    new PartitionKey(product.getCategory()));
+        } catch (RuntimeException e) {
+            if (CosmosErrors.isConflict(e)) {
+                throw alreadyExists(product.getId());
+            }
+            throw e;
+        }
+        cached(saved);
+        productsByCategory.synchronous().invalidate(saved.getCategory());
+        publish(readModel -> readModel.productSaved(saved));
+        return saved;
+    }
+
+    public Slice<Product> getProductsPage(int pageSize, String continuationToken) {
+        CosmosQuery query = new CosmosQuery(Criteria.getInstance(CriteriaType.ALL))
+                .with(new CosmosPageRequest(0, pageSize, continuationToken));
+        Slice<Product> page = cosmosTemplate.sliceQuery(query, Product.class, cosmosTemplate.getContainerName(Product.class));
+        page.forEach(this::remember);
+        return page;
+    }
+
+    public void forEachPage(int pageSize, Consumer<List<Product>> consumer) {
+        String continuationToken = null;
+        do {
+            Slice<Product> page = getProductsPage(pageSize, continuationToken);
+            consumer.accept(page.getContent());
+            continuationToken = continuationOf(page);
+        } while (continuationToken != null);
     }
 
-    public List<Product> getAllProducts() {
-        List<Product> products = new ArrayList<>();
-        productRepository.findAll().forEach(products::add);
-        return products;
+    public static String continuationOf(Slice<?> page) {
+        if (!page.hasNext()) {
+            return null;
+        }
+        Pageable next = page.nextPageable();
+        return next instanceof CosmosPageRequest cosmosPageRequest ? cosmosPageRequest.getRequestContinuation() : null;
     }
 
     public Optional<Product> getProductById(String id) {
-        return productRepository.findById(id);
+        return getProductById(id, categoryById.getIfPresent(id));
+    }
+
+    public Optional<Product> getProductById(String id, String category) {
+        return Optional.ofNullable(loadThrough(productsById, id, () -> readProduct(id, category)));
+    }
+
+    /**
+     * Reads the product from the store, bypassing the cache, and caches what it
+     * finds. For decisions such as where a product keeps its stock that a cached
+     * copy may predate.
+     */
+    public Optional<Product> getCurrentProduct(String id, String category) {
+        Optional<Product> product = Optional.ofNullable(readProduct(id, category));
+        product.ifPresent(this::cached);
+        return product;
+    }
+
+    private Product readProduct(String id, String category) {
+        if (category != null) {
+            Optional<Product> product = productRepository.findById(id, new PartitionKey(category));
+            if (product.isPresent()) {
+                observe(product.get());
+                return product.get();
+            }
+            categoryById.asMap().remove(id, category);
+        }
+
+        Optional<Product> product = productRepository.findById(id);
+        product.ifPresent(this::observe);
+        return product.orElse(null);
+    }
+
+    /**
+     * Resolves many products at once. Cached products are served from memory; the
+     * rest are read with one multi-get grouped by partition (category) and, for ids
+     * whose category is not known here, one cross-partition query. The result is
+     * keyed in the caller's order; ids that do not exist are absent.
+     */
+    public Map<String, Product> getProductsByIds(Collection<String> ids) {
+        return readProductsByIds(ids, true);
+    }
+
+    /**
+     * Like {@link #getProductsByIds(Collection)} but always reads from the store, for
+     * decisions such as checkout pricing that must not act on a cached copy.
+     */
+    public Map<String, Product> getCurrentProductsByIds(Collection<String> ids) {
+        return readProductsByIds(ids, false);
+    }
+
+    private Map<String, Product> readProductsByIds(Collection<String> ids, boolean useCache) {
+        Map<String, Product> found = new LinkedHashMap<>();
+        // Ids this call loads (registered in the cache as in-flight loads) and ids loaded elsewhere
+        Map<String, CompletableFuture<Product>> loading = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Product>> awaiting = new LinkedHashMap<>();
+        for (String id : ids) {
+            found.put(id, null);
+            if (!useCache) {
+                loading.put(id, new CompletableFuture<>());
+                continue;
+            }
+            CompletableFuture<Product> cached = productsById.getIfPresent(id);
+            if (cached == null) {
+                CompletableFuture<Product> load = new CompletableFuture<>();
+                cached = productsById.asMap().putIfAbsent(id, load);
+                if (cached == null) {
+                    loading.put(id, load);
+                    continue;
+                }
+            }
+            awaiting.put(id, cached);
+        }
+
+        try {
+            Map<String, Product> read = readFromStore(loading.keySet());
+            loading.forEach((id, load) -> {
+                Product product = read.get(id);
+                found.put(id, product);
+                load.complete(product);
+            });
+        } catch (RuntimeException e) {
+            loading.values().forEach(load -> load.completeExceptionally(e));
+            throw e;
+        }
+        // Own loads are completed first, so two callers waiting on each other's ids cannot deadlock
+        awaiting.forEach((id, load) -> found.put(id, join(load)));
+
+        found.values().removeIf(product -> product == null);
+        return found;
+    }
+
+    private Map<String, Product> readFromStore(Collection<String> ids) {
+        Map<String, Product> read = new LinkedHashMap<>();
+        List<CosmosItemIdentity> routed = new ArrayList<>();
+        List<String> unrouted = new ArrayList<>();
+        for (String id : ids) {
+            String category = categoryById.getIfPresent(id);
+            if (category != null) {
+                routed.add(new CosmosItemIdentity(new PartitionKey(category), id));
+            } else {
+                unrouted.add(id);
+            }
+        }
+
+        if (!routed.isEmpty()) {
+            productContainer.readMany(routed, Product.class).getResults().forEach(product -> {
+                observe(product);
+                read.put(product.getId(), product);
+            });
+            for (CosmosItemIdentity identity : routed) {
+                if (!read.containsKey(identity.getId())) {
+                    unrouted.add(identity.getId());
+                }
+            }
+        }
+        if (!unrouted.isEmpty()) {
+            productRepository.findAllById(unrouted).forEach(product -> {
+                observe(product);
+                read.put(product.getId(), product);
+            });
+        }
+        return read;
     }
 
     public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+        if (categoryIndex != null && categoryIndex.isReady()) {
+            return categoryIndex.get(category);
+        }
+        // Loaded on the calling thread, not inside the cache's compute: a store call made while
+        // holding the map's bin lock would block other loads and pin the carrier of a virtual thread
+        return loadThrough(productsByCategory, category, () -> {
+            List<Product> products = List.copyOf(productRepository.findByCategory(category));
+            products.forEach(this::observe);
+            return products;
+        });
+    }
+
+    public List<Product> filterProductsByCategory(String category, Double minPrice, Double maxPrice,
+                                                  boolean inStockOnly, int offset, int limit) {
+        double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+
+        Stream<Product> matches;
+        if (priceIndex != null && priceIndex.isReady()) {
+            matches = priceIndex.range(category, min, max);
+        } else {
+            matches = getProductsByCategory(category).stream()
+                    .filter(product -> product.getPrice() != null
+                            && product.getPrice() >= min
+                            && product.getPrice() <= max)
+                    .sorted(Comparator.comparingDouble(Product::getPrice));
+        }
+        // Sharded products keep no stock of their own; their shards are summed
+        if (!inStockOnly) {
+            return matches.skip(offset).limit(limit).map(this::withCurrentStock).toList();
+        }
+        return matches.map(this::withCurrentStock)
+                .filter(product -> product.getStockQuantity() != null && product.getStockQuantity() > 0)
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
+
+    public List<Product> searchProducts(String query, int limit) {
+        if (searchIndex == null || !searchIndex.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Product search index is not available");
+        }
+        return searchIndex.search(query, limit);
     }
 
+    /**
+     * Replaces a product's name, description and price. Stock is changed only by
+     * reservations and {@link InventoryService#adjustStock}, so an existing product
+     * in the same category is patched and keeps its stock and shard layout; a plain
+     * replace would overwrite units held by carts and race concurrent reservations.
+     * The category is the partition key, so a product cannot move between categories
+     * here: that would leave its stock counted under both.
+     */
     public Product updateProduct(String id, Product product) {
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "category is required");
+        }
         product.setId(id);
-        return productRepository.save(product);
+        Optional<Product> existing = getProductById(id, product.getCategory());
+        if (existing.isPresent() && !existing.get().getCategory().equals(product.getCategory())) {
+            throw categoryChange(id, existing.get());
+        }
+        // Only a price or name change moves the catalog version, so other updates do not re-check carts
+        product.setPriceChangedAt(existing
+                .filter(current -> Objects.equals(current.getPrice(), product.getPrice())
+                        && Objects.equals(current.getName(), product.getName()))
+                .map(Product::getPriceChangedAt)
+                .orElseGet(catalogVersion::next));
+
+        Product saved;
+        if (existing.isPresent()) {
+            try {
+                saved = productRepository.save(id, new PartitionKey(product.getCategory()), Product.class,
+                        detailsPatch(product), withContent(new CosmosPatchItemRequestOptions()));
+            } catch (RuntimeException e) {
+                if (CosmosErrors.statusCode(e) == CosmosErrors.NOT_FOUND) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+                }
+                throw e;
+            }
+        } else {
+            // New product: the body's stock is the initial stock
+            saved = productRepository.save(product);
+        }
+        cached(saved);
+        productsByCategory.synchronous().invalidate(saved.getCategory());
+        publish(readModel -> readModel.productSaved(saved));
+        return saved;
+    }
+
+    static void requireIdAndCategory(Product product) {
+        if (product.getId() == null || product.getId().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "id is required");
+        }
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "category is required");
+        }
+    }
+
+    static ResponseStatusException alreadyExists(String id) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Product " + id + " already exists");
+    }
+
+    static ResponseStatusException categoryChange(String id, Product existing) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Product " + id + " belongs to category "
+                + existing.getCategory() + "; to move it, delete it and create it in the new category");
+    }
+
+    /**
+     * Applies a stock level written by a reservation, release or restock. Cached
+     * copies take the new level. Category listings and read models are only
+     * refreshed when the product goes in or out of stock, which is what the in-stock
+     * filter depends on, so a busy product does not republish on every sale.
+     */
+    public void stockChanged(Product updated, int previousStock) {
+        remember(updated);
+        productsById.asMap().computeIfPresent(updated.getId(),
+                (id, cachedProduct) -> CompletableFuture.completedFuture(updated));
+        int stock = updated.getStockQuantity() != null ? updated.getStockQuantity() : 0;
+        if ((previousStock > 0) != (stock > 0)) {
+            productsByCategory.synchronous().invalidate(updated.getCategory());
+            publish(readModel -> readModel.productSaved(updated));
+        }
+    }
+
+    // The product fields a PUT or an import may change; stock and shard layout are left as stored
+    // Without a priceChangedAt the stored one is kept
+    static CosmosPatchOperations detailsPatch(Product product) {
+        CosmosPatchOperations patch = CosmosPatchOperations.create()
+                .set("/name", product.getName())
+                .set("/description", product.getDescription())
+                .set("/price", product.getPrice());
+        if (product.getPriceChangedAt() != null) {
+            patch.set("/priceChangedAt", product.getPriceChangedAt());
+        }
+        return patch;
+    }
+
+    // Patches are read back into caches, so ask for the stored document whatever the client default
+    static CosmosPatchItemRequestOptions withContent(CosmosPatchItemRequestOptions options) {
+        options.setContentResponseOnWriteEnabled(true);
+        return options;
     }
 
     public void deleteProduct(String id) {
-        productRepository.deleteById(id);
+        String category = categoryById.getIfPresent(id);
+        if (category != null) {
+            productRepository.deleteById(id, new PartitionKey(category));
+        } else {
+            productRepository.deleteById(id);
+        }
+        // Invalidated only once the document is gone, so a concurrent read cannot cache it again
+        productsById.synchronous().invalidate(id);
+        categoryById.invalidate(id);
+        if (category != null) {
+            productsByCategory.synchronous().invalidate(category);
+        }
+        publish(readModel -> readModel.productDeleted(id));
+    }
+
+    /**
+     * Splits a product's stock over {@code shards} sub-counters so reservations on a
+     * hot product no longer all write the same document.
+     */
+    public Product shardStock(String id, int shards) {
+        Product product = productRepository.findById(id, new PartitionKey(requireCategory(id)))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+        Product sharded = shardedStock.shard(product, shards);
+        cached(sharded);
+        productsByCategory.synchronous().invalidate(sharded.getCategory());
+        publish(readModel -> readModel.productSaved(sharded));
+        return withCurrentStock(sharded);
+    }
+
+    /**
+     * Returns the product with {@code stockQuantity} showing its available stock,
+     * summing the shards for products whose stock is sharded.
+     */
+    public Product withCurrentStock(Product product) {
+        if (!product.hasShardedStock()) {
+            return product;
+        }
+        Product copy = new Product(product.getId(), product.getCategory(), product.getName(),
+                product.getDescription(), product.getPrice(), shardedStock.total(product));
+        copy.setStockShards(product.getStockShards());
+        copy.setPriceChangedAt(product.getPriceChangedAt());
+        return copy;
+    }
+
+    /**
+     * Applies a product change made elsewhere (e.g. by another node) to the local
+     * caches and read models. The product is cached as stored. Like
+     * {@link #stockChanged}, category lists and read models are only refreshed when
+     * something they show changed: details, category, the price version, the shard
+     * layout, or the product going in or out of stock. Every reservation elsewhere
+     * arrives here, so a hot product must not republish on each sale.
+     */
+    public void refresh(Product product) {
+        applyChanges(List.of(product), true);
+    }
+
+    // Import batches come through here as a whole so the read models apply them in one update
+    public void refreshAll(List<Product> products) {
+        applyChanges(products, false);
+    }
+
+    private void applyChanges(List<Product> products, boolean cacheAbsent) {
+        Set<String> categories = new HashSet<>();
+        List<Product> changed = new ArrayList<>();
+        for (Product product : products) {
+            Product previous = cachedCopy(product.getId());
+            String previousCategory = categoryById.getIfPresent(product.getId());
+            remember(product);
+            if (cacheAbsent) {
+                productsById.put(product.getId(), CompletableFuture.completedFuture(product));
+            } else {
+                productsById.asMap().computeIfPresent(product.getId(),
+                        (id, cachedProduct) -> CompletableFuture.completedFuture(product));
+            }
+            catalogVersion.observe(product);
+            if (previous != null && !changesListings(previous, product)) {
+                continue;
+            }
+            if (previousCategory != null) {
+                categories.add(previousCategory);
+            }
+            categories.add(product.getCategory());
+            changed.add(product);
+        }
+        if (!changed.isEmpty()) {
+            productsByCategory.synchronous().invalidateAll(categories);
+            publish(readModel -> readModel.productsSaved(changed));
+        }
+    }
+
+    private Product cachedCopy(String id) {
+        CompletableFuture<Product> cached = productsById.getIfPresent(id);
+        return cached != null && cached.isDone() && !cached.isCompletedExceptionally() ? cached.join() : null;
+    }
+
+    static boolean changesListings(Product previous, Product current) {
+        return !Objects.equals(previous.getCategory(), current.getCategory())
+                || !Objects.equals(previous.getName(), current.getName())
+                || !Objects.equals(previous.getDescription(), current.getDescription())
+                || !Objects.equals(previous.getPrice(), current.getPrice())
+                || !Objects.equals(previous.getPriceChangedAt(), current.getPriceChangedAt())
+                || !Objects.equals(previous.getStockShards(), current.getStockShards())
+                || inStock(previous) != inStock(current);
+    }
+
+    private static boolean inStock(Product product) {
+        return product.getStockQuantity() != null && product.getStockQuantity() > 0;
+    }
+
+    private String requireCategory(String id) {
+        String category = categoryById.getIfPresent(id);
+        if (category == null) {
+            category = getProductById(id)
+                    .map(Product::getCategory)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+        }
+        return category;
+    }
+
+    private void publish(Consumer<ProductChangeListener> change) {
+        if (readModels.isEmpty()) {
+            return;
+        }
+        readModelLock.lock();
+        try {
+            if (deferredChanges != null) {
+                deferredChanges.add(change);
+            } else {
+                readModels.forEach(change);
+            }
+        } finally {
+            readModelLock.unlock();
+        }
+    }
+
+    // Replaces any entry, including a load in flight, so a write always wins over an older read
+    private void cached(Product product) {
+        remember(product);
+        productsById.put(product.getId(), CompletableFuture.completedFuture(product));
+        // Raised after the cache holds the product, so a cart checked at the new version sees it
+        catalogVersion.observe(product);
+    }
+
+    // For products read from the store; the caller's in-flight cache entry is already in place
+    private void observe(Product product) {
+        remember(product);
+        catalogVersion.observe(product);
+    }
+
+    /**
+     * Returns the cached value or loads it on the calling thread. The load is
+     * registered as an in-flight entry and runs outside any cache lock; if the key is
+     * invalidated or overwritten meanwhile, the loaded value is not cached. Null
+     * results are not cached.
+     */
+    private static <V> V loadThrough(AsyncCache<String, V> cache, String key, Supplier<V> loader) {
+        CompletableFuture<V> cached = cache.getIfPresent(key);
+        if (cached == null) {
+            CompletableFuture<V> load = new CompletableFuture<>();
+            cached = cache.asMap().putIfAbsent(key, load);
+            if (cached == null) {
+                try {
+                    V value = loader.get();
+                    load.complete(value);
+                    return value;
+                } catch (RuntimeException e) {
+                    load.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        return join(cached);
+    }
+
+    private static <V> V join(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void remember(Product product) {
+        if (product.getId() != null && product.getCategory() != null) {
+            categoryById.put(product.getId(), product.getCategory());
+        }
     }
 }
@@ -0,0 +1,248 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.ReactiveCosmosTemplate;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartBatchResult;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.CartLineError;
+import com.shopping.cart.model.CartLineRequest;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.ReactiveCartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Non-blocking counterpart of {@link CartService} used by the {@code reactive}
+ * profile. Cart changes are the same {@link CartMutations} and are written the same
+ * way as by {@link CartMutationEngine}: ETag-conditional patches, a full replace
+ * when a change is too large for one patch, and a create-if-absent insert for new
+ * carts. Writers racing on one cart are resolved by re-reading and re-applying with
+ * jittered back-off rather than by the in-process mailbox. Stock is reserved and
+ * released through {@link ReactiveInventoryService}.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCartService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveCartService.class);
+
+    private final ReactiveCartRepository cartRepository;
+    private final ReactiveCosmosTemplate cosmosTemplate;
+    private final ReactiveProductService productService;
+    private final ReactiveInventoryService inventoryService;
+    private final boolean legacyLookup;
+    private final Retry retryOnConflict;
+
+    public ReactiveCartService(ReactiveCartRepository cartRepository,
+                               ReactiveCosmosTemplate cosmosTemplate,
+                               ReactiveProductService productService,
+                               ReactiveInventoryService inventoryService,
+                               MeterRegistry meterRegistry,
+                               @Value("${cart.addressing.legacy-lookup:false}") boolean legacyLookup,
+                               @Value("${cart.concurrency.max-attempts:5}") int maxAttempts,
+                               @Value("${cart.concurrency.backoff-millis:10}") long backoffMillis) {
+        this.cartRepository = cartRepository;
+        this.cosmosTemplate = cosmosTemplate;
+        this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.legacyLookup = legacyLookup;
+
+        Counter retries = meterRegistry.counter("cart.write.retries");
+        Counter exhausted = meterRegistry.counter("cart.write.retries.exhausted");
+        this.retryOnConflict = Retry.backoff(Math.max(0, maxAttempts - 1), Duration.ofMillis(Math.max(1, backoffMillis)))
+                .jitter(1.0)
+                .filter(e -> CosmosErrors.isConflict(e) || CosmosErrors.isPreconditionFailed(e))
+                .doBeforeRetry(signal -> retries.increment())
+                .onRetryExhaustedThrow((spec, signal) -> {
+                    exhausted.increment();
+                    return signal.failure();
+                });
+    }
+
+    public Mono<Cart> addItemToCart(String userId, String productId, String category, Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "quantity must be at least 1"));
+        }
+        return productService.getProductById(productId, category)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Product not found")))
+                .flatMap(product -> inventoryService.reserve(product, quantity).flatMap(reservation ->
+                        releasingOnError(userId, apply(userId, CartMutations.addItem(product, quantity, reservation)),
+                                List.of(reservation))));
+    }
+
+    public Mono<CartBatchResult> addItemsToCart(String userId, List<CartLineRequest> lines) {
+        List<CartLineError> errors = new ArrayList<>();
+        List<CartLineRequest> valid = new ArrayList<>();
+        for (CartLineRequest line : lines) {
+            if (line.getProductId() == null || line.getProductId().isBlank()) {
+                errors.add(new CartLineError(line.getProductId(), "productId is required"));
+            } else if (line.getQuantity() == null || line.getQuantity() < 1) {
+                errors.add(new CartLineError(line.getProductId(), "quantity must be at least 1"));
+            } else {
+                valid.add(line);
+            }
+        }
+
+        List<StockReservation> reservations = new ArrayList<>();
+        return productService.getProductsByIds(valid.stream().map(CartLineRequest::getProductId).distinct().toList())
+                .flatMap(products -> Flux.fromIterable(valid)
+                        .concatMap(line -> {
+                            Product product = products.get(line.getProductId());
+                            if (product == null) {
+                                errors.add(new CartLineError(line.getProductId(), "Product not found"));
+                                return Mono.empty();
+                            }
+                            return inventoryService.reserve(product, line.getQuantity())
+                                    .map(reservation -> {
+                                        reservations.add(reservation);
+                                        return CartMutations.addItem(product, line.getQuantity(), reservation);
+                                    })
+                                    .onErrorResume(InsufficientStockException.class, e -> {
+                                        errors.add(new CartLineError(line.getProductId(), e.getReason()));
+                                        return Mono.empty();
+                                    });
+                        })
+                        .collectList()
+                        .onErrorResume(e -> release(reservations).then(Mono.error(e))))
+                .flatMap(mutations -> {
+                    Mono<Cart> cart = mutations.isEmpty()
+                            ? getCart(userId)
+                            : releasingOnError(userId, apply(userId, (current, patch) ->
+                                    mutations.forEach(mutation -> mutation.apply(current, patch))), reservations);
+                    return cart.map(result -> new CartBatchResult(result, errors));
+                });
+    }
+
+    public Mono<Cart> updateCartItemQuantity(String userId, String productId, Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "quantity must be zero or more"));
+        }
+        if (quantity == 0) {
+            return removeItemFromCart(userId, productId);
+        }
+        return getCart(userId).flatMap(current -> {
+            int index = CartMutations.indexOf(current, productId);
+            if (index < 0) {
+                return Mono.just(current);
+            }
+
+            CartItem line = current.getItems().get(index);
+            int shortfall = quantity - CartMutations.reservedOf(line);
+            StockReservation none = StockReservation.none(productId, line.getCategory());
+            Mono<StockReservation> extra = shortfall > 0
+                    ? productService.getProductById(productId, line.getCategory())
+                            .flatMap(product -> inventoryService.reserve(product, shortfall))
+                            .defaultIfEmpty(none)
+                    : Mono.just(none);
+
+            return extra.flatMap(reservation -> {
+                StockReleases released = new StockReleases();
+                return releasingOnError(userId,
+                        apply(userId, CartMutations.setQuantity(productId, quantity, reservation, released)),
+                        List.of(reservation))
+                        .flatMap(cart -> release(released.entries()).thenReturn(cart));
+            });
+        });
+    }
+
+    public Mono<Cart> removeItemFromCart(String userId, String productId) {
+        StockReleases released = new StockReleases();
+        return apply(userId, CartMutations.removeItem(productId, released))
+                .flatMap(cart -> release(released.entries()).thenReturn(cart));
+    }
+
+    public Mono<Void> clearCart(String userId) {
+        StockReleases released = new StockReleases();
+        return apply(userId, CartMutations.clear(released))
+                .flatMap(cart -> release(released.entries()));
+    }
+
+    public Mono<Cart> getCart(String userId) {
+        return find(userId).defaultIfEmpty(emptyCart(userId));
+    }
+
+    private Mono<Cart> find(String userId) {
+        Mono<Cart> cart = cartRepository.findById(Cart.idFor(userId), new PartitionKey(userId));
+        if (legacyLookup) {
+            return cart.switchIfEmpty(Mono.defer(() -> cartRepository.findByUserId(userId).next()));
+        }
+        return cart;
+    }
+
+    private Mono<Void> release(List<StockReservation> reservations) {
+        if (reservations.isEmpty()) {
+            return Mono.empty();
+        }
+        return inventoryService.release(reservations);
+    }
+
+    // Same rule as CartService: after a write with an unknown outcome, only reservations no line holds go back
+    private Mono<Cart> releasingOnError(String userId, Mono<Cart> write, List<StockReservation> reservations) {
+        return write.onErrorResume(e -> {
+            Mono<Void> release = CosmosErrors.isRejected(e)
+                    ? release(reservations)
+                    : find(userId)
+                            .map(cart -> reservations.stream()
+                                    .filter(reservation -> !CartMutations.holds(cart, reservation))
+                                    .toList())
+                            .defaultIfEmpty(reservations)
+                            .flatMap(this::release)
+                            .onErrorResume(readFailure -> {
+                                log.error("Cart write for user {} has an unknown outcome; keeping {} reservations",
+                                        userId, reservations.size(), readFailure);
+                                return Mono.empty();
+                            });
+            return release.then(Mono.error(e));
+        });
+    }
+
+    private Cart emptyCart(String userId) {
+        return new Cart(Cart.idFor(userId), userId, new ArrayList<>());
+    }
+
+    private Mono<Cart> apply(String userId, CartMutation mutation) {
+        return Mono.defer(() -> applyOnce(userId, mutation)).retryWhen(retryOnConflict);
+    }
+
+    private Mono<Cart> applyOnce(String userId, CartMutation mutation) {
+        return find(userId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(existing -> {
+                    Cart cart = existing.orElseGet(() -> emptyCart(userId));
+                    CartPatch patch = new CartPatch();
+                    mutation.apply(cart, patch);
+
+                    if (patch.isEmpty()) {
+                        return Mono.just(cart);
+                    }
+                    if (existing.isEmpty()) {
+                        return cosmosTemplate.insert(cosmosTemplate.getContainerName(Cart.class), cart, new PartitionKey(userId));
+                    }
+                    if (patch.size() > CartMutationEngine.MAX_PATCH_OPERATIONS) {
+                        return cartRepository.save(cart);
+                    }
+
+                    CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+                    options.setIfMatchETag(cart.get_etag());
+                    return cartRepository.save(cart.getId(), new PartitionKey(userId), Cart.class, patch.toOperations(), options);
+                });
+    }
+}
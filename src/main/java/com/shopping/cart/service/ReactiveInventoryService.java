@@ -0,0 +1,181 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.StockShard;
+import com.shopping.cart.repository.ReactiveProductRepository;
+import com.shopping.cart.repository.ReactiveStockShardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link InventoryService} used by the {@code reactive}
+ * profile. Reservations and releases are the same conditional patches, issued
+ * through the reactive repositories so no thread waits on the store. Sharded stock
+ * is taken from one shard at a time; a reservation no single shard can cover is
+ * handed to {@link ShardedStockCounter} on the bounded-elastic scheduler.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveInventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveInventoryService.class);
+
+    private final ReactiveProductRepository productRepository;
+    private final ReactiveStockShardRepository shardRepository;
+    private final ShardedStockCounter shardedStock;
+    private final StockAdmissionController admission;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter released;
+
+    public ReactiveInventoryService(ReactiveProductRepository productRepository,
+                                    ReactiveStockShardRepository shardRepository,
+                                    ShardedStockCounter shardedStock,
+                                    ObjectProvider<StockAdmissionController> admission,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${cart.reservations.enabled:true}") boolean enabled,
+                                    @Value("${cart.reservations.ttl-seconds:900}") long ttlSeconds) {
+        this.productRepository = productRepository;
+        this.shardRepository = shardRepository;
+        this.shardedStock = shardedStock;
+        this.admission = admission.getIfAvailable();
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.reserved = meterRegistry.counter("inventory.reservations", "outcome", "reserved");
+        this.rejected = meterRegistry.counter("inventory.reservations", "outcome", "rejected");
+        this.released = meterRegistry.counter("inventory.releases");
+    }
+
+    public Mono<StockReservation> reserve(Product product, int quantity) {
+        if (!enabled || quantity <= 0 || (!product.hasShardedStock() && product.getStockQuantity() == null)) {
+            return Mono.just(StockReservation.none(product.getId(), product.getCategory()));
+        }
+        if (admission != null && !admission.tryAdmit(product, quantity)) {
+            return Mono.error(new InsufficientStockException(product.getId()));
+        }
+
+        Mono<Boolean> taken = product.hasShardedStock()
+                ? takeFromShards(product, quantity)
+                : productRepository.save(product.getId(), new PartitionKey(product.getCategory()), Product.class,
+                                InventoryService.adjustment(-quantity), InventoryService.atLeast(quantity))
+                        .thenReturn(true)
+                        .onErrorResume(CosmosErrors::isPreconditionFailed, e -> takeIfShardedSince(product, quantity));
+        return taken.flatMap(ok -> ok
+                ? Mono.just(reserved(product, quantity))
+                : Mono.error(insufficient(product, quantity)));
+    }
+
+    /**
+     * Returns reserved stock. Failures are logged rather than signalled: the cart
+     * change that freed the stock has already been stored.
+     */
+    public Mono<Void> release(Collection<StockReservation> reservations) {
+        return Flux.fromIterable(reservations).concatMap(this::release).then();
+    }
+
+    public Mono<Void> release(StockReservation reservation) {
+        if (reservation.getQuantity() <= 0) {
+            return Mono.empty();
+        }
+        int quantity = reservation.getQuantity();
+        // Stock goes back wherever the product keeps it now, which may differ from where it was taken
+        return productRepository.findById(reservation.getProductId(), new PartitionKey(reservation.getCategory()))
+                .flatMap(product -> {
+                    Mono<?> write = product.hasShardedStock()
+                            ? addToShard(product, quantity)
+                            : productRepository.save(product.getId(), new PartitionKey(product.getCategory()),
+                                    Product.class, InventoryService.adjustment(quantity), new CosmosPatchItemRequestOptions());
+                    return write.doOnSuccess(ignored -> {
+                        released.increment();
+                        if (admission != null) {
+                            admission.onReleased(product.getId(), quantity);
+                        }
+                    });
+                })
+                .onErrorResume(e -> {
+                    if (CosmosErrors.statusCode(e) == CosmosErrors.NOT_FOUND) {
+                        log.debug("Product {} no longer exists; dropping release of {} units",
+                                reservation.getProductId(), quantity);
+                    } else {
+                        log.error("Failed to release {} units of product {}", quantity, reservation.getProductId(), e);
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    // The product may have been read before its stock was handed over to shards, which
+    // leaves the product itself with none; only the stored document can tell
+    private Mono<Boolean> takeIfShardedSince(Product product, int quantity) {
+        return productRepository.findById(product.getId(), new PartitionKey(product.getCategory()))
+                .filter(Product::hasShardedStock)
+                .flatMap(current -> takeFromShards(current, quantity))
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Boolean> takeFromShards(Product product, int quantity) {
+        int shards = product.getStockShards();
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        return Flux.range(0, shards)
+                .concatMap(i -> takeFromShard(product.getId(), (start + i) % shards, quantity)
+                        .filter(Boolean::booleanValue)
+                        .map(ok -> i))
+                .next()
+                .map(attempts -> {
+                    if (attempts > 0) {
+                        shardedStock.rebalanceLater(product);
+                    }
+                    return true;
+                })
+                .switchIfEmpty(Mono.fromCallable(() -> {
+                    shardedStock.rebalanceLater(product);
+                    return shardedStock.takeAcrossShards(product, quantity);
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<Boolean> takeFromShard(String productId, int shard, int quantity) {
+        String id = StockShard.idFor(productId, shard);
+        return shardRepository.save(id, new PartitionKey(id), StockShard.class,
+                        ShardedStockCounter.adjustment(-quantity), ShardedStockCounter.holding(quantity))
+                .thenReturn(true)
+                .onErrorResume(e -> CosmosErrors.isPreconditionFailed(e)
+                        || CosmosErrors.statusCode(e) == CosmosErrors.NOT_FOUND, e -> Mono.just(false));
+    }
+
+    private Mono<StockShard> addToShard(Product product, int quantity) {
+        String id = StockShard.idFor(product.getId(), ThreadLocalRandom.current().nextInt(product.getStockShards()));
+        return shardRepository.save(id, new PartitionKey(id), StockShard.class,
+                ShardedStockCounter.adjustment(quantity), new CosmosPatchItemRequestOptions());
+    }
+
+    private StockReservation reserved(Product product, int quantity) {
+        reserved.increment();
+        return new StockReservation(product.getId(), product.getCategory(), quantity,
+                System.currentTimeMillis() + ttlMillis);
+    }
+
+    private InsufficientStockException insufficient(Product product, int quantity) {
+        rejected.increment();
+        if (admission != null) {
+            admission.onRejected(product.getId(), quantity);
+        }
+        return new InsufficientStockException(product.getId());
+    }
+}
@@ -0,0 +1,184 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.ReactiveCosmosTemplate;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.StockShard;
+import com.shopping.cart.repository.ReactiveProductRepository;
+import com.shopping.cart.repository.ReactiveStockShardRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Non-blocking counterpart of {@link ProductService} used by the {@code reactive}
+ * profile. Reads go straight to the store; the in-memory caches and read models
+ * (search, category and price indexes) belong to the servlet stack.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveProductService {
+
+    private final ReactiveProductRepository productRepository;
+    private final CosmosAsyncContainer productContainer;
+    private final ReactiveStockShardRepository shardRepository;
+    private final CatalogVersion catalogVersion;
+    private final ReactiveCosmosTemplate cosmosTemplate;
+
+    public ReactiveProductService(ReactiveProductRepository productRepository,
+                                  CosmosAsyncContainer productContainer,
+                                  ReactiveStockShardRepository shardRepository,
+                                  CatalogVersion catalogVersion,
+                                  ReactiveCosmosTemplate cosmosTemplate) {
+        this.productRepository = productRepository;
+        this.productContainer = productContainer;
+        this.shardRepository = shardRepository;
+        this.catalogVersion = catalogVersion;
+        this.cosmosTemplate = cosmosTemplate;
+    }
+
+    /**
+     * Same rules as {@link ProductService#createProduct}: the product gets a new
+     * catalog version and an id already in use is refused with {@code 409}.
+     */
+    public Mono<Product> createProduct(Product product) {
+        try {
+            ProductService.requireIdAndCategory(product);
+        } catch (ResponseStatusException e) {
+            return Mono.error(e);
+        }
+        return getProductById(product.getId(), product.getCategory())
+                .flatMap(existing -> Mono.<Long>error(ProductService.alreadyExists(product.getId())))
+                .switchIfEmpty(Mono.defer(this::nextVersion))
+                .flatMap(version -> {
+                    product.setPriceChangedAt(version);
+                    return cosmosTemplate.insert(cosmosTemplate.getContainerName(Product.class), product,
+                            new PartitionKey(product.getCategory()));
+                })
+                .onErrorMap(CosmosErrors::isConflict, e -> ProductService.alreadyExists(product.getId()));
+    }
+
+    public Mono<FeedResponse<Product>> getProductsPage(int pageSize, String continuationToken) {
+        return productContainer.queryItems("SELECT * FROM c", new CosmosQueryRequestOptions(), Product.class)
+                .byPage(continuationToken, pageSize)
+                .next();
+    }
+
+    public Flux<Product> getAllProducts() {
+        return productContainer.queryItems("SELECT * FROM c", new CosmosQueryRequestOptions(), Product.class);
+    }
+
+    public Mono<Product> getProductById(String id, String category) {
+        if (category == null) {
+            return productRepository.findById(id);
+        }
+        return productRepository.findById(id, new PartitionKey(category))
+                .switchIfEmpty(Mono.defer(() -> productRepository.findById(id)));
+    }
+
+    public Mono<Map<String, Product>> getProductsByIds(Collection<String> ids) {
+        return productRepository.findAllById(ids).collectMap(Product::getId);
+    }
+
+    public Flux<Product> getProductsByCategory(String category) {
+        return productRepository.findByCategory(category);
+    }
+
+    public Flux<Product> filterProductsByCategory(String category, Double minPrice, Double maxPrice,
+                                                  boolean inStockOnly, int offset, int limit) {
+        double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        return productRepository.findByCategory(category)
+                .filter(product -> product.getPrice() != null
+                        && product.getPrice() >= min
+                        && product.getPrice() <= max)
+                // Sharded products keep no stock of their own; their shards are summed
+                .concatMap(product -> inStockOnly ? withCurrentStock(product) : Mono.just(product))
+                .filter(product -> !inStockOnly
+                        || (product.getStockQuantity() != null && product.getStockQuantity() > 0))
+                .sort(Comparator.comparingDouble(Product::getPrice))
+                .skip(offset)
+                .take(limit)
+                .concatMap(product -> inStockOnly ? Mono.just(product) : withCurrentStock(product));
+    }
+
+    /**
+     * Returns the product with {@code stockQuantity} showing its available stock,
+     * summing the shards for products whose stock is sharded.
+     */
+    public Mono<Product> withCurrentStock(Product product) {
+        if (!product.hasShardedStock()) {
+            return Mono.just(product);
+        }
+        return shardRepository.findAllById(IntStream.range(0, product.getStockShards())
+                        .mapToObj(shard -> StockShard.idFor(product.getId(), shard))
+                        .toList())
+                .map(shard -> shard.getQuantity() != null ? shard.getQuantity() : 0)
+                .reduce(0, Integer::sum)
+                .map(total -> {
+                    Product copy = new Product(product.getId(), product.getCategory(), product.getName(),
+                            product.getDescription(), product.getPrice(), total);
+                    copy.setStockShards(product.getStockShards());
+                    copy.setPriceChangedAt(product.getPriceChangedAt());
+                    return copy;
+                });
+    }
+
+    /**
+     * Same rules as {@link ProductService#updateProduct}: an existing product in the
+     * same category is patched, keeping its stock and shard layout, and a product
+     * cannot move to another category.
+     */
+    public Mono<Product> updateProduct(String id, Product product) {
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "category is required"));
+        }
+        product.setId(id);
+        return getProductById(id, product.getCategory())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(existing -> {
+                    if (existing.isPresent() && !existing.get().getCategory().equals(product.getCategory())) {
+                        return Mono.error(ProductService.categoryChange(id, existing.get()));
+                    }
+                    Optional<Long> unchanged = existing
+                            .filter(current -> Objects.equals(current.getPrice(), product.getPrice())
+                                    && Objects.equals(current.getName(), product.getName()))
+                            .map(Product::getPriceChangedAt);
+                    return unchanged.map(Mono::just).orElseGet(this::nextVersion).flatMap(version -> {
+                        product.setPriceChangedAt(version);
+                        if (existing.isPresent()) {
+                            return productRepository.save(id, new PartitionKey(product.getCategory()), Product.class,
+                                    ProductService.detailsPatch(product),
+                                    ProductService.withContent(new CosmosPatchItemRequestOptions()));
+                        }
+                        return productRepository.save(product);
+                    });
+                });
+    }
+
+    // Taking a version is a blocking write to the counter; keep it off the event loop
+    private Mono<Long> nextVersion() {
+        return Mono.fromCallable(catalogVersion::next).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Void> deleteProduct(String id) {
+        return productRepository.findById(id)
+                .flatMap(product -> productRepository.deleteById(id, new PartitionKey(product.getCategory())));
+    }
+}
@@ -0,0 +1,64 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.shopping.cart.model.Cart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Returns stock held by cart lines whose reservation has expired. Each cart is
+ * updated through the mailbox like any other change, so the hold is dropped and the
+ * stock returned exactly once even when several instances sweep at the same time.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.reservations.enabled", havingValue = "true", matchIfMissing = true)
+public class ReservationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationSweeper.class);
+    private static final String EXPIRED_QUERY = "SELECT * FROM c WHERE NOT IS_DEFINED(c.type) AND EXISTS("
+            + "SELECT VALUE i FROM i IN c.items WHERE i.reservedQuantity > 0 AND i.reservationExpiresAt <= @now)";
+
+    private final CosmosTemplate cosmosTemplate;
+    private final CartMutationMailbox mailbox;
+    private final InventoryService inventoryService;
+
+    public ReservationSweeper(CosmosTemplate cosmosTemplate,
+                              CartMutationMailbox mailbox,
+                              InventoryService inventoryService) {
+        this.cosmosTemplate = cosmosTemplate;
+        this.mailbox = mailbox;
+        this.inventoryService = inventoryService;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.reservations.sweep-interval-millis:30000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        int swept = 0;
+        try {
+            SqlQuerySpec query = new SqlQuerySpec(EXPIRED_QUERY, new SqlParameter("@now", now));
+            for (Cart cart : cosmosTemplate.runQuery(query, Cart.class, Cart.class)) {
+                StockReleases released = new StockReleases();
+                try {
+                    mailbox.submit(cart.getUserId(), CartMutations.expireReservations(now, released), Optional.of(cart));
+                } catch (RuntimeException e) {
+                    log.warn("Failed to expire reservations on cart {}", cart.getId(), e);
+                    continue;
+                }
+                inventoryService.release(released.entries());
+                swept++;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reservation sweep failed", e);
+        }
+        if (swept > 0) {
+            log.debug("Released expired reservations on {} carts", swept);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.StockShard;
+import com.shopping.cart.repository.ProductRepository;
+import com.shopping.cart.repository.StockShardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Stock for hot products split over several sub-counter documents, each in its own
+ * partition, so concurrent reservations spread over independent documents instead
+ * of all patching the product. The product's available stock is the sum of its
+ * shards.
+ * <p>
+ * A reservation decrements one shard chosen at random, falling through to the
+ * others when it cannot cover the quantity. Hitting a dry shard triggers a
+ * background rebalance that evens the shards out again; every unit moved is a
+ * conditional decrement followed by an increment, so stock is never created.
+ */
+@Component
+public class ShardedStockCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedStockCounter.class);
+    private static final String QUANTITY_PATH = "/quantity";
+    private static final int ADD_ATTEMPTS = 3;
+    private static final long ADD_BACKOFF_MILLIS = 50;
+
+    private final StockShardRepository shardRepository;
+    private final ProductRepository productRepository;
+    private final CosmosTemplate cosmosTemplate;
+    private final ExecutorService ioExecutor;
+    private final Counter rebalances;
+    private final Counter lostUnits;
+    private final Set<String> rebalancing = ConcurrentHashMap.newKeySet();
+
+    public ShardedStockCounter(StockShardRepository shardRepository,
+                               ProductRepository productRepository,
+                               CosmosTemplate cosmosTemplate,
+                               @Qualifier("ioExecutor") ExecutorService ioExecutor,
+                               MeterRegistry meterRegistry) {
+        this.shardRepository = shardRepository;
+        this.productRepository = productRepository;
+        this.cosmosTemplate = cosmosTemplate;
+        this.ioExecutor = ioExecutor;
+        this.rebalances = meterRegistry.counter("inventory.shards.rebalances");
+        this.lostUnits = meterRegistry.counter("inventory.shards.lost-units");
+    }
+
+    /**
+     * Moves a product's stock into {@code shards} sub-counters. Returns the product
+     * as stored afterwards, with {@code stockShards} set and no stock of its own.
+     * Shards that already exist belong to a concurrent or unfinished attempt and are
+     * never touched: the call fails with 409 instead. Only shards this call created
+     * are deleted, and only once the hand-over has certainly not happened.
+     */
+    public Product shard(Product product, int shards) {
+        if (product.hasShardedStock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Stock of product " + product.getId() + " is already sharded");
+        }
+        // Fill the shards first; nothing reads them until the hand-over below marks the product sharded
+        int stock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        for (int shard = 0; shard < shards; shard++) {
+            StockShard filled = new StockShard(product.getId(), shard, stock / shards + (shard < stock % shards ? 1 : 0));
+            try {
+                cosmosTemplate.insert(StockShard.CONTAINER_NAME, filled, new PartitionKey(filled.getId()));
+            } catch (RuntimeException e) {
+                deleteShards(product.getId(), shard);
+                if (CosmosErrors.isConflict(e)) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Stock shard " + filled.getId()
+                            + " already exists; the product is being sharded or an earlier attempt did not finish");
+                }
+                throw e;
+            }
+        }
+
+        // Take the stock off the product and mark it sharded in one write, so no
+        // reservation can be served by both representations
+        CosmosPatchOperations handOver = CosmosPatchOperations.create()
+                .set("/stockQuantity", 0)
+                .set("/stockShards", shards);
+        CosmosPatchItemRequestOptions options = ProductService.withContent(new CosmosPatchItemRequestOptions());
+        options.setFilterPredicate("FROM p WHERE p.stockQuantity = " + stock
+                + " AND (NOT IS_DEFINED(p.stockShards) OR IS_NULL(p.stockShards) OR p.stockShards = 0)");
+        try {
+            return productRepository.save(product.getId(), new PartitionKey(product.getCategory()),
+                    Product.class, handOver, options);
+        } catch (RuntimeException e) {
+            if (!CosmosErrors.isRejected(e)) {
+                // The write may still land; shards the product might come to rely on are kept
+                log.error("Handing the stock of product {} over to {} shards has an unknown outcome; "
+                        + "its shards are kept", product.getId(), shards, e);
+                throw e;
+            }
+            deleteShards(product.getId(), shards);
+            if (CosmosErrors.isPreconditionFailed(e)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Stock of product " + product.getId() + " changed while sharding; retry");
+            }
+            throw e;
+        }
+    }
+
+    public int total(Product product) {
+        return readShards(product).stream().mapToInt(ShardedStockCounter::quantityOf).sum();
+    }
+
+    /**
+     * Takes {@code quantity} units from the product's shards. Returns false when the
+     * shards together do not hold enough.
+     */
+    public boolean tryReserve(Product product, int quantity) {
+        int shards = product.getStockShards();
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (tryTake(product.getId(), (start + i) % shards, quantity)) {
+                if (i > 0) {
+                    rebalanceLater(product);
+                }
+                return true;
+            }
+        }
+        rebalanceLater(product);
+        return takeAcrossShards(product, quantity);
+    }
+
+    public void release(Product product, int quantity) {
+        add(product.getId(), ThreadLocalRandom.current().nextInt(product.getStockShards()), quantity);
+    }
+
+    /**
+     * Evens the shards out around their mean. Units are moved from shards above the
+     * mean to shards below it; a move whose source changed in the meantime is skipped.
+     */
+    void rebalance(Product product) {
+        List<StockShard> shards = readShards(product);
+        if (shards.isEmpty()) {
+            return;
+        }
+        int target = shards.stream().mapToInt(ShardedStockCounter::quantityOf).sum() / shards.size();
+        List<StockShard> donors = new ArrayList<>(shards.stream().filter(shard -> quantityOf(shard) > target).toList());
+
+        for (StockShard receiver : shards) {
+            int needed = target - quantityOf(receiver);
+            for (StockShard donor : donors) {
+                if (needed <= 0) {
+                    break;
+                }
+                int move = Math.min(needed, quantityOf(donor) - target);
+                if (move > 0 && tryTake(product.getId(), donor.getShard(), move)) {
+                    donor.setQuantity(quantityOf(donor) - move);
+                    addTaken(product.getId(), receiver.getShard(), move);
+                    needed -= move;
+                }
+            }
+        }
+        rebalances.increment();
+    }
+
+    void rebalanceLater(Product product) {
+        if (!rebalancing.add(product.getId())) {
+            return;
+        }
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    rebalance(product);
+                } catch (RuntimeException e) {
+                    log.warn("Rebalancing stock shards of product {} failed", product.getId(), e);
+                } finally {
+                    rebalancing.remove(product.getId());
+                }
+            });
+        } catch (RuntimeException e) {
+            rebalancing.remove(product.getId());
+            throw e;
+        }
+    }
+
+    // No single shard holds enough; take what each one has until the quantity is covered
+    boolean takeAcrossShards(Product product, int quantity) {
+        List<StockShard> shards = new ArrayList<>(readShards(product));
+        if (shards.stream().mapToInt(ShardedStockCounter::quantityOf).sum() < quantity) {
+            return false;
+        }
+        shards.sort(Comparator.comparingInt(ShardedStockCounter::quantityOf).reversed());
+
+        int remaining = quantity;
+        Map<Integer, Integer> taken = new HashMap<>();
+        for (StockShard shard : shards) {
+            int take = Math.min(remaining, quantityOf(shard));
+            if (take > 0 && tryTake(product.getId(), shard.getShard(), take)) {
+                taken.put(shard.getShard(), take);
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                return true;
+            }
+        }
+        taken.forEach((shard, units) -> addTaken(product.getId(), shard, units));
+        return false;
+    }
+
+    private boolean tryTake(String productId, int shard, int quantity) {
+        String id = StockShard.idFor(productId, shard);
+        try {
+            shardRepository.save(id, new PartitionKey(id), StockShard.class, adjustment(-quantity), holding(quantity));
+            return true;
+        } catch (RuntimeException e) {
+            if (CosmosErrors.isPreconditionFailed(e) || CosmosErrors.statusCode(e) == CosmosErrors.NOT_FOUND) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void add(String productId, int shard, int quantity) {
+        String id = StockShard.idFor(productId, shard);
+        shardRepository.save(id, new PartitionKey(id), StockShard.class, adjustment(quantity));
+    }
+
+    /**
+     * Adds units already taken from another shard. Until the add lands those units
+     * exist nowhere, so an add the store refused is retried; one with an unknown
+     * outcome is not, since an increment applied twice would create stock. Units
+     * that cannot be placed are logged and counted rather than silently dropped.
+     */
+    private void addTaken(String productId, int shard, int quantity) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                add(productId, shard, quantity);
+                return;
+            } catch (RuntimeException e) {
+                if (!CosmosErrors.isRejected(e) || attempt >= ADD_ATTEMPTS || !backOff(attempt)) {
+                    lostUnits.increment(quantity);
+                    log.error("{} units of product {} taken for shard {} could not be added back; "
+                            + "restore them with POST /api/products/{}/stock", quantity, productId, shard, productId, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean backOff(int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ADD_BACKOFF_MILLIS * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static CosmosPatchOperations adjustment(int delta) {
+        return CosmosPatchOperations.create().increment(QUANTITY_PATH, delta);
+    }
+
+    static CosmosPatchItemRequestOptions holding(int quantity) {
+        CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+        options.setFilterPredicate("FROM s WHERE s.quantity >= " + quantity);
+        return options;
+    }
+
+    // Deletes shards 0 to count - 1
+    private void deleteShards(String productId, int count) {
+        for (int shard = 0; shard < count; shard++) {
+            String id = StockShard.idFor(productId, shard);
+            try {
+                shardRepository.deleteById(id, new PartitionKey(id));
+            } catch (RuntimeException e) {
+                if (CosmosErrors.statusCode(e) != CosmosErrors.NOT_FOUND) {
+                    log.warn("Failed to delete unused stock shard {}", id, e);
+                }
+            }
+        }
+    }
+
+    private List<StockShard> readShards(Product product) {
+        List<String> ids = IntStream.range(0, product.getStockShards())
+                .mapToObj(shard -> StockShard.idFor(product.getId(), shard))
+                .toList();
+        List<StockShard> shards = new ArrayList<>();
+        shardRepository.findAllById(ids).forEach(shards::add);
+        return shards;
+    }
+
+    private static int quantityOf(StockShard shard) {
+        return shard.getQuantity() != null ? shard.getQuantity() : 0;
+    }
+}
@@ -0,0 +1,151 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-node admission in front of stock reservations. Keeps an approximate count of
+ * the stock left for recently reserved products and turns away requests that
+ * cannot succeed without touching the store, so a sold-out product stops
+ * generating writes that are bound to fail.
+ * <p>
+ * Admitted requests draw the count down; a rejection from the store caps it below
+ * the quantity that failed. Until a product's count is first reconciled every
+ * request is admitted. Counts are replaced with the stored stock on a fixed
+ * interval, which also picks up restocks and releases made by other nodes. The
+ * store stays authoritative: admission only ever saves writes, it never grants
+ * stock.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.reservations.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class StockAdmissionController {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAdmissionController.class);
+    private static final int UNKNOWN = Integer.MAX_VALUE;
+
+    private final ProductRepository productRepository;
+    private final ShardedStockCounter shardedStock;
+    private final int maxTrackedProducts;
+    private final long idleMillis;
+    private final Counter admitted;
+    private final Counter rejected;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    public StockAdmissionController(ProductRepository productRepository,
+                                    ShardedStockCounter shardedStock,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${cart.reservations.admission.max-tracked-products:1000}") int maxTrackedProducts,
+                                    @Value("${cart.reservations.admission.idle-seconds:60}") long idleSeconds) {
+        this.productRepository = productRepository;
+        this.shardedStock = shardedStock;
+        this.maxTrackedProducts = maxTrackedProducts;
+        this.idleMillis = TimeUnit.SECONDS.toMillis(idleSeconds);
+        this.admitted = meterRegistry.counter("inventory.admission", "outcome", "admitted");
+        this.rejected = meterRegistry.counter("inventory.admission", "outcome", "rejected");
+        meterRegistry.gauge("inventory.admission.tracked", estimates, Map::size);
+    }
+
+    public boolean tryAdmit(Product product, int quantity) {
+        Estimate estimate = estimates.get(product.getId());
+        if (estimate == null) {
+            if (estimates.size() >= maxTrackedProducts) {
+                admitted.increment();
+                return true;
+            }
+            estimate = estimates.computeIfAbsent(product.getId(), id -> new Estimate(product));
+        }
+        estimate.lastSeen = System.currentTimeMillis();
+
+        for (;;) {
+            int remaining = estimate.remaining.get();
+            if (remaining == UNKNOWN) {
+                admitted.increment();
+                return true;
+            }
+            if (remaining < quantity) {
+                rejected.increment();
+                return false;
+            }
+            if (estimate.remaining.compareAndSet(remaining, remaining - quantity)) {
+                admitted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records that the store could not supply {@code quantity} units, so fewer
+     * than that are left.
+     */
+    public void onRejected(String productId, int quantity) {
+        Estimate estimate = estimates.get(productId);
+        if (estimate != null) {
+            estimate.remaining.updateAndGet(remaining -> Math.min(remaining, quantity - 1));
+        }
+    }
+
+    public void onReleased(String productId, int quantity) {
+        Estimate estimate = estimates.get(productId);
+        if (estimate != null) {
+            estimate.remaining.updateAndGet(remaining -> remaining == UNKNOWN ? UNKNOWN : remaining + quantity);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.reservations.admission.reconcile-interval-millis:1000}")
+    public void reconcile() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        estimates.values().removeIf(estimate -> estimate.lastSeen < idleSince);
+        estimates.forEach((productId, estimate) -> {
+            try {
+                Optional<Integer> stock = storedStock(estimate);
+                if (stock.isPresent()) {
+                    estimate.remaining.set(stock.get());
+                } else {
+                    estimates.remove(productId, estimate);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Reconciling admission count for product {} failed", productId, e);
+            }
+        });
+    }
+
+    private Optional<Integer> storedStock(Estimate estimate) {
+        Optional<Product> product = productRepository.findById(estimate.productId, new PartitionKey(estimate.category));
+        if (product.isEmpty()) {
+            return Optional.empty();
+        }
+        if (product.get().hasShardedStock()) {
+            return Optional.of(shardedStock.total(product.get()));
+        }
+        return Optional.ofNullable(product.get().getStockQuantity());
+    }
+
+    private static final class Estimate {
+
+        private final String productId;
+        private final String category;
+        private final AtomicInteger remaining = new AtomicInteger(UNKNOWN);
+        private volatile long lastSeen = System.currentTimeMillis();
+
+        private Estimate(Product product) {
+            this.productId = product.getId();
+            this.category = product.getCategory();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.shopping.cart.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the stock a cart mutation takes off cart lines so it can be returned to
+ * inventory once the cart write has succeeded. Mutations reset it on every attempt,
+ * so after a retried write it holds what the successful attempt released.
+ */
+public final class StockReleases {
+
+    private final List<StockReservation> entries = new ArrayList<>();
+
+    void reset() {
+        entries.clear();
+    }
+
+    void add(String productId, String category, int quantity) {
+        if (quantity > 0) {
+            entries.add(new StockReservation(productId, category, quantity, null));
+        }
+    }
+
+    void add(StockReservation reservation) {
+        add(reservation.getProductId(), reservation.getCategory(), reservation.getQuantity());
+    }
+
+    public List<StockReservation> entries() {
+        return List.copyOf(entries);
+    }
+}
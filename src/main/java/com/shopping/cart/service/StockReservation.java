@@ -0,0 +1,41 @@
+package com.shopping.cart.service;
+
+/**
+ * Units of a product taken out of {@code stockQuantity} and not yet recorded on
+ * (or already removed from) a cart line. A reservation of zero units stands for a
+ * product whose stock is not tracked.
+ */
+public final class StockReservation {
+
+    private final String productId;
+    private final String category;
+    private final int quantity;
+    private final Long expiresAt;
+
+    public StockReservation(String productId, String category, int quantity, Long expiresAt) {
+        this.productId = productId;
+        this.category = category;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public static StockReservation none(String productId, String category) {
+        return new StockReservation(productId, category, 0, null);
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+}
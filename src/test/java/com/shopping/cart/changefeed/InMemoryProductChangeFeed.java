@@ -0,0 +1,31 @@
+package com.shopping.cart.changefeed;
+
+import com.shopping.cart.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand-in for the products change feed: writes made "on another node"
+ * are appended to a log, and the reader's position in it is the only lease state,
+ * kept locally like the Cosmos continuation token.
+ */
+class InMemoryProductChangeFeed implements ProductChangeFeed {
+
+    private final List<Product> log = new ArrayList<>();
+    private Integer position;
+
+    synchronized void record(Product product) {
+        log.add(product);
+    }
+
+    @Override
+    public synchronized List<Product> poll() {
+        if (position == null) {
+            position = log.size();
+        }
+        List<Product> changes = List.copyOf(log.subList(position, log.size()));
+        position = log.size();
+        return changes;
+    }
+}
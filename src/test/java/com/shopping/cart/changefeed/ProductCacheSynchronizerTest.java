@@ -0,0 +1,58 @@
+package com.shopping.cart.changefeed;
+
+import com.shopping.cart.model.Product;
+import com.shopping.cart.service.ProductService;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ProductCacheSynchronizerTest {
+
+    private final InMemoryProductChangeFeed changeFeed = new InMemoryProductChangeFeed();
+    private final ProductService productService = mock(ProductService.class);
+    private final ProductCacheSynchronizer synchronizer = new ProductCacheSynchronizer(changeFeed, productService);
+
+    @Test
+    void startsFromNowAndAppliesEachLaterChangeOnce() {
+        Product before = product("p1", 10.0);
+        changeFeed.record(before);
+        synchronizer.synchronize();
+
+        Product updated = product("p1", 12.0);
+        Product created = product("p2", 5.0);
+        changeFeed.record(updated);
+        changeFeed.record(created);
+        synchronizer.synchronize();
+        synchronizer.synchronize();
+
+        verify(productService, never()).refresh(before);
+        verify(productService, times(1)).refresh(updated);
+        verify(productService, times(1)).refresh(created);
+    }
+
+    @Test
+    void aFailedRefreshDoesNotDropTheOtherChanges() {
+        synchronizer.synchronize();
+        Product failing = product("p1", 10.0);
+        Product sameBatch = product("p2", 5.0);
+        doThrow(new IllegalStateException("cache unavailable")).when(productService).refresh(failing);
+        changeFeed.record(failing);
+        changeFeed.record(sameBatch);
+        synchronizer.synchronize();
+
+        Product nextBatch = product("p3", 7.0);
+        changeFeed.record(nextBatch);
+        synchronizer.synchronize();
+
+        verify(productService, times(1)).refresh(sameBatch);
+        verify(productService, times(1)).refresh(nextBatch);
+    }
+
+    private static Product product(String id, double price) {
+        return new Product(id, "books", "Product " + id, null, price, 10);
+    }
+}
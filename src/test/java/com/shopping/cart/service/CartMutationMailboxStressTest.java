@@ -0,0 +1,185 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartMutationMailboxStressTest {
+
+    private static final int THREADS = 64;
+    private static final Duration WRITE_LATENCY = Duration.ofNanos(200_000);
+    private static final int ADDS_PER_THREAD = 200;
+    private static final List<Product> PRODUCTS = List.of(
+            product("p1"), product("p2"), product("p3"), product("p4"));
+
+    @Test
+    void concurrentChangesToOneCartAreAllApplied() throws Exception {
+        InMemoryCartMutationEngine engine = new InMemoryCartMutationEngine(WRITE_LATENCY);
+        CartMutationMailbox mailbox = new CartMutationMailbox(engine, 0, 0, 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            workers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    Product product = PRODUCTS.get((thread + i) % PRODUCTS.size());
+                    mailbox.submit("user-1", CartMutations.addItem(product, 1,
+                            StockReservation.none(product.getId(), product.getCategory())));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Cart cart = engine.find("user-1").orElseThrow();
+        assertEquals(PRODUCTS.size(), cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            assertEquals(THREADS * ADDS_PER_THREAD / PRODUCTS.size(), item.getQuantity().intValue(),
+                    "quantity of " + item.getProductId());
+        }
+        assertEquals(1, engine.maxConcurrentWrites.get(), "writes to one cart must not overlap");
+        assertTrue(engine.writes.get() < THREADS * ADDS_PER_THREAD, "queued changes should be coalesced");
+        assertEquals(0, mailbox.activeMailboxes(), "idle mailboxes should be dropped");
+    }
+
+    @Test
+    void aBlockedCartDoesNotHoldUpOtherUsers() throws Exception {
+        CountDownLatch slowWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlowWrite = new CountDownLatch(1);
+        InMemoryCartMutationEngine engine = new InMemoryCartMutationEngine(WRITE_LATENCY) {
+            @Override
+            void beforeWrite(String userId) {
+                if (userId.equals("slow")) {
+                    slowWriteStarted.countDown();
+                    await(releaseSlowWrite);
+                }
+            }
+        };
+        CartMutationMailbox mailbox = new CartMutationMailbox(engine, 0, 0, 0);
+        Product product = PRODUCTS.get(0);
+        StockReservation none = StockReservation.none(product.getId(), product.getCategory());
+
+        ExecutorService pool = Executors.newCachedThreadPool();
+        Future<Cart> slow = pool.submit(() -> mailbox.submit("slow", CartMutations.addItem(product, 1, none)));
+        assertTrue(slowWriteStarted.await(10, TimeUnit.SECONDS));
+
+        Future<Cart> fast = pool.submit(() -> mailbox.submit("fast", CartMutations.addItem(product, 1, none)));
+        assertEquals(1, fast.get(10, TimeUnit.SECONDS).getTotalItems().intValue());
+
+        releaseSlowWrite.countDown();
+        assertEquals(1, slow.get(10, TimeUnit.SECONDS).getTotalItems().intValue());
+        pool.shutdown();
+    }
+
+    @Test
+    void changesWithinTheWindowAreWrittenOnceOffTheSchedulerThread() throws Exception {
+        InMemoryCartMutationEngine engine = new InMemoryCartMutationEngine(WRITE_LATENCY);
+        CartMutationMailbox mailbox = new CartMutationMailbox(engine, 50, 4, 16);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Product product = PRODUCTS.get(t % PRODUCTS.size());
+            workers.add(pool.submit(() -> {
+                start.await();
+                return mailbox.submit("user-1", CartMutations.addItem(product, 1,
+                        StockReservation.none(product.getId(), product.getCategory())));
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        mailbox.shutdown();
+
+        assertEquals(THREADS, engine.find("user-1").orElseThrow().getTotalItems().intValue());
+        assertTrue(engine.writes.get() < THREADS, "changes within the window should share writes");
+        assertTrue(engine.writerThreads.stream().allMatch(name -> name.startsWith("cart-flush-")),
+                "writes must run on the flush pool, not on " + engine.writerThreads);
+    }
+
+    @Test
+    void aSaturatedFlushPoolFailsTheHeldChangesInsteadOfWritingOnTheScheduler() throws Exception {
+        CountDownLatch blockedWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlockedWrite = new CountDownLatch(1);
+        InMemoryCartMutationEngine engine = new InMemoryCartMutationEngine(WRITE_LATENCY) {
+            @Override
+            void beforeWrite(String userId) {
+                if (userId.equals("blocked")) {
+                    blockedWriteStarted.countDown();
+                    await(releaseBlockedWrite);
+                }
+            }
+        };
+        CartMutationMailbox mailbox = new CartMutationMailbox(engine, 10, 1, 1);
+        Product product = PRODUCTS.get(0);
+        StockReservation none = StockReservation.none(product.getId(), product.getCategory());
+
+        ExecutorService pool = Executors.newCachedThreadPool();
+        Future<Cart> blocked = pool.submit(() -> mailbox.submit("blocked", CartMutations.addItem(product, 1, none)));
+        assertTrue(blockedWriteStarted.await(10, TimeUnit.SECONDS));
+        // The pool's one thread is busy, so of two more flushes one is queued and the other refused
+        Future<Cart> first = pool.submit(() -> mailbox.submit("first", CartMutations.addItem(product, 1, none)));
+        Future<Cart> second = pool.submit(() -> mailbox.submit("second", CartMutations.addItem(product, 1, none)));
+        Future<Cart> refused = awaitFirstDone(first, second);
+        Future<Cart> held = refused == first ? second : first;
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> refused.get(10, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                ((ResponseStatusException) failure.getCause()).getStatusCode());
+
+        releaseBlockedWrite.countDown();
+        assertEquals(1, blocked.get(10, TimeUnit.SECONDS).getTotalItems().intValue());
+        assertEquals(1, held.get(10, TimeUnit.SECONDS).getTotalItems().intValue());
+        assertEquals(2, engine.writes.get());
+        assertFalse(engine.writerThreads.contains("cart-flusher"), "the scheduler thread must not write");
+        pool.shutdown();
+        mailbox.shutdown();
+    }
+
+    private static Future<Cart> awaitFirstDone(Future<Cart> first, Future<Cart> second) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!first.isDone() && !second.isDone() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        return first.isDone() ? first : second;
+    }
+
+    private static Product product(String id) {
+        return new Product(id, "books", "Product " + id, null, 10.0, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartMutationsTest {
+
+    @Test
+    void loweringQuantityReleasesTheUnitsNoLongerNeeded() {
+        Cart cart = cartHolding(3);
+        StockReleases released = new StockReleases();
+
+        CartMutations.setQuantity("p1", 1, StockReservation.none("p1", "books"), released).apply(cart, new CartPatch());
+
+        assertEquals(1, cart.getItems().get(0).getReservedQuantity());
+        assertEquals(2, released.entries().stream().mapToInt(StockReservation::getQuantity).sum());
+    }
+
+    @Test
+    void aNegativeQuantityNeverReleasesMoreThanIsHeld() {
+        Cart cart = cartHolding(2);
+        StockReleases released = new StockReleases();
+
+        CartMutations.setQuantity("p1", -5, StockReservation.none("p1", "books"), released).apply(cart, new CartPatch());
+
+        assertEquals(0, cart.getItems().get(0).getReservedQuantity());
+        assertEquals(2, released.entries().stream().mapToInt(StockReservation::getQuantity).sum());
+    }
+
+    @Test
+    void aCartHoldsAReservationOnlyOnceItsWriteLanded() {
+        Cart cart = cartHolding(2);
+        long heldUntil = cart.getItems().get(0).getReservationExpiresAt();
+
+        assertTrue(CartMutations.holds(cart, new StockReservation("p1", "books", 2, heldUntil)));
+        assertFalse(CartMutations.holds(cart, new StockReservation("p1", "books", 1, heldUntil + 1)));
+        assertFalse(CartMutations.holds(cart, new StockReservation("p2", "books", 1, heldUntil)));
+    }
+
+    private static Cart cartHolding(int reserved) {
+        CartItem item = new CartItem("p1", "books", "Product p1", 10.0, reserved);
+        item.setReservedQuantity(reserved);
+        item.setReservationExpiresAt(System.currentTimeMillis() + 60_000);
+        return new Cart(Cart.idFor("u1"), "u1", new ArrayList<>(List.of(item)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CartRepricerTest {
+
+    private final CatalogVersion catalogVersion = new CatalogVersion(null, null, null);
+    private final ProductService productService = mock(ProductService.class);
+    private final CartMutationMailbox mailbox = mock(CartMutationMailbox.class);
+    private final CartRepricer repricer = new CartRepricer(
+            catalogVersion, productService, mailbox, new SimpleMeterRegistry(), true);
+
+    @Test
+    void aChangeToAnotherProductDoesNotWriteTheCart() {
+        Product own = product("p1", 10.0, 100L);
+        catalogVersion.observe(product("p2", 5.0, 200L));
+        when(productService.getProductsByIds(any())).thenReturn(Map.of("p1", own));
+        Cart cart = cart(100L, line("p1", 10.0));
+
+        assertSame(cart, repricer.reprice(cart));
+        verify(mailbox, never()).submit(any(), any(), any());
+    }
+
+    @Test
+    void aCartWhoseLinesAlreadyMatchIsNotWritten() {
+        Product own = product("p1", 12.0, 200L);
+        catalogVersion.observe(own);
+        when(productService.getProductsByIds(any())).thenReturn(Map.of("p1", own));
+        Cart cart = cart(100L, line("p1", 12.0));
+
+        assertSame(cart, repricer.reprice(cart));
+        verify(mailbox, never()).submit(any(), any(), any());
+    }
+
+    @Test
+    void aStaleLineIsRewritten() {
+        Product own = product("p1", 12.0, 200L);
+        catalogVersion.observe(own);
+        when(productService.getProductsByIds(any())).thenReturn(Map.of("p1", own));
+        Cart cart = cart(100L, line("p1", 10.0));
+
+        repricer.reprice(cart);
+
+        verify(mailbox).submit(eq("user-1"), any(), any());
+    }
+
+    @Test
+    void aCheckedCartIsOnlyLookedUpAgainOnceTheCatalogMoves() {
+        catalogVersion.observe(product("p2", 5.0, 200L));
+        when(productService.getProductsByIds(any())).thenReturn(Map.of("p1", product("p1", 10.0, 100L)));
+        Cart cart = cart(100L, line("p1", 10.0));
+
+        repricer.reprice(cart);
+        repricer.reprice(cart);
+        verify(productService, times(1)).getProductsByIds(any());
+
+        catalogVersion.observe(product("p3", 5.0, 300L));
+        repricer.reprice(cart);
+        verify(productService, times(2)).getProductsByIds(any());
+    }
+
+    @Test
+    void theCheckedVersionIsStoredWithTheCartsNextChange() {
+        catalogVersion.observe(product("p2", 5.0, 200L));
+        when(productService.getProductsByIds(any())).thenReturn(Map.of("p1", product("p1", 10.0, 100L)));
+        Cart cart = cart(100L, line("p1", 10.0));
+        repricer.reprice(cart);
+
+        repricer.stamping("user-1", CartMutations.addItem(product("p4", 3.0, 150L), 1,
+                StockReservation.none("p4", "c1"))).apply(cart, new CartPatch());
+
+        assertEquals(200L, cart.getCatalogVersion().longValue());
+    }
+
+    private static Cart cart(Long version, CartItem... items) {
+        Cart cart = new Cart("user-1", "user-1", new ArrayList<>(List.of(items)));
+        cart.setCatalogVersion(version);
+        return cart;
+    }
+
+    private static CartItem line(String productId, double price) {
+        return new CartItem(productId, "c1", "Product " + productId, price, 1);
+    }
+
+    private static Product product(String id, double price, long priceChangedAt) {
+        Product product = new Product(id, "c1", "Product " + id, "", price, null);
+        product.setPriceChangedAt(priceChangedAt);
+        return product;
+    }
+}
@@ -0,0 +1,117 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBatchResponse;
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import com.shopping.cart.model.Order;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CheckoutServiceTest {
+
+    private final CartMutationEngine mutationEngine = mock(CartMutationEngine.class);
+    private final CartMutationMailbox mailbox = mock(CartMutationMailbox.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final InventoryService inventoryService = mock(InventoryService.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final CosmosContainer cartContainer = mock(CosmosContainer.class);
+    private final CheckoutService checkout = new CheckoutService(mutationEngine, mailbox, productService,
+            inventoryService, orderRepository, cartContainer, new SimpleMeterRegistry(), 3);
+
+    private final Product product = new Product("p1", "books", "Book", null, 10.0, 5);
+
+    @Test
+    void aCartChangedDuringCheckoutReturnsTheStockAndTriesAgain() {
+        when(mutationEngine.find("user-1")).thenReturn(Optional.of(cart(10.0)));
+        when(productService.getCurrentProductsByIds(any())).thenReturn(Map.of("p1", product));
+        StockReservation first = new StockReservation("p1", "books", 2, null);
+        StockReservation second = new StockReservation("p1", "books", 2, null);
+        when(inventoryService.reserve(eq(product), anyInt())).thenReturn(first).thenReturn(second);
+        CosmosBatchResponse changed = response(false, CosmosErrors.PRECONDITION_FAILED);
+        CosmosBatchResponse applied = response(true, 200);
+        when(cartContainer.executeCosmosBatch(any())).thenReturn(changed).thenReturn(applied);
+
+        Order order = checkout.checkout("user-1");
+
+        assertEquals("user-1", order.getUserId());
+        verify(cartContainer, times(2)).executeCosmosBatch(any());
+        verify(inventoryService).release(List.of(first));
+        verify(inventoryService, never()).release(List.of(second));
+    }
+
+    @Test
+    void aBatchWithAnUnknownOutcomeIsResolvedByReadingTheOrder() {
+        when(mutationEngine.find("user-1")).thenReturn(Optional.of(cart(10.0)));
+        when(productService.getCurrentProductsByIds(any())).thenReturn(Map.of("p1", product));
+        when(inventoryService.reserve(eq(product), anyInt())).thenReturn(new StockReservation("p1", "books", 2, null));
+        when(cartContainer.executeCosmosBatch(any())).thenThrow(new IllegalStateException("connection reset"));
+        Order stored = new Order("order-1", "user-1", List.of(), 20.0, 1L);
+        when(orderRepository.findById(any(), any())).thenReturn(Optional.of(stored));
+
+        assertSame(stored, checkout.checkout("user-1"));
+        verify(inventoryService, never()).release(any(List.class));
+    }
+
+    @Test
+    void aBatchThatDidNotLandReturnsTheStock() {
+        when(mutationEngine.find("user-1")).thenReturn(Optional.of(cart(10.0)));
+        when(productService.getCurrentProductsByIds(any())).thenReturn(Map.of("p1", product));
+        StockReservation taken = new StockReservation("p1", "books", 2, null);
+        when(inventoryService.reserve(eq(product), anyInt())).thenReturn(taken);
+        IllegalStateException reset = new IllegalStateException("connection reset");
+        when(cartContainer.executeCosmosBatch(any())).thenThrow(reset);
+        when(orderRepository.findById(any(), any())).thenReturn(Optional.empty());
+
+        assertSame(reset, assertThrows(IllegalStateException.class, () -> checkout.checkout("user-1")));
+        verify(inventoryService).release(List.of(taken));
+    }
+
+    @Test
+    void aDriftedPriceIsWrittenBackAndTheCheckoutRefused() {
+        when(mutationEngine.find("user-1")).thenReturn(Optional.of(cart(8.0)));
+        when(productService.getCurrentProductsByIds(any())).thenReturn(Map.of("p1", product));
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class, () -> checkout.checkout("user-1"));
+
+        assertEquals(HttpStatus.CONFLICT, error.getStatusCode());
+        verify(mailbox).submit(eq("user-1"), any());
+        verify(inventoryService, never()).reserve(any(), anyInt());
+        verify(cartContainer, never()).executeCosmosBatch(any());
+    }
+
+    private static Cart cart(double price) {
+        Cart cart = new Cart("user-1", "user-1",
+                new ArrayList<>(List.of(new CartItem("p1", "books", "Book", price, 2))));
+        cart.set_etag("etag-1");
+        return cart;
+    }
+
+    private static CosmosBatchResponse response(boolean success, int statusCode) {
+        CosmosBatchResponse response = mock(CosmosBatchResponse.class);
+        when(response.isSuccessStatusCode()).thenReturn(success);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        return response;
+    }
+}
@@ -0,0 +1,79 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Cart;
+import com.shopping.cart.model.CartItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in for the Cosmos-backed engine: keeps carts in memory, blocks for a fixed
+ * latency per write and records how many writes overlapped and which threads ran them.
+ */
+class InMemoryCartMutationEngine extends CartMutationEngine {
+
+    private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long writeLatencyNanos;
+    final AtomicInteger maxConcurrentWrites = new AtomicInteger();
+    final AtomicInteger writes = new AtomicInteger();
+    final Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+
+    InMemoryCartMutationEngine(Duration writeLatency) {
+        super(null, null, new SimpleMeterRegistry(), false, 5, 10);
+        this.writeLatencyNanos = writeLatency.toNanos();
+    }
+
+    /**
+     * Called while a write is in flight; simulates the store round trip.
+     */
+    void beforeWrite(String userId) {
+        LockSupport.parkNanos(writeLatencyNanos);
+    }
+
+    @Override
+    public Optional<Cart> find(String userId) {
+        return Optional.ofNullable(carts.get(userId)).map(InMemoryCartMutationEngine::copy);
+    }
+
+    @Override
+    public Cart apply(String userId, CartMutation mutation) {
+        return apply(userId, mutation, find(userId));
+    }
+
+    @Override
+    public Cart apply(String userId, CartMutation mutation, Optional<Cart> snapshot) {
+        maxConcurrentWrites.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Cart cart = snapshot.map(InMemoryCartMutationEngine::copy).orElseGet(() -> emptyCart(userId));
+            mutation.apply(cart, new CartPatch());
+            beforeWrite(userId);
+            carts.put(userId, copy(cart));
+            writes.incrementAndGet();
+            writerThreads.add(Thread.currentThread().getName());
+            return cart;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static Cart copy(Cart cart) {
+        List<CartItem> items = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            CartItem copy = new CartItem(item.getProductId(), item.getCategory(), item.getProductName(),
+                    item.getPrice(), item.getQuantity());
+            copy.setReservedQuantity(item.getReservedQuantity());
+            copy.setReservationExpiresAt(item.getReservationExpiresAt());
+            items.add(copy);
+        }
+        return new Cart(cart.getId(), cart.getUserId(), items);
+    }
+}
@@ -0,0 +1,97 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.shopping.cart.model.Product;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stand-in for the products container's bulk API. Each bulk call takes a fixed
+ * latency, and every {@code throttleEvery}-th call answers 429 for all of its rows
+ * the first time those rows are sent. Creates land in a map; patches of a stored
+ * product are acknowledged with the stored document, without applying the fields.
+ */
+final class InMemoryProductStore {
+
+    final Map<String, Product> products = new ConcurrentHashMap<>();
+    final AtomicInteger bulkCalls = new AtomicInteger();
+    final AtomicInteger throttledCalls = new AtomicInteger();
+    final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+    private final AtomicInteger concurrentCalls = new AtomicInteger();
+    private final Set<String> throttledOnce = ConcurrentHashMap.newKeySet();
+    private final Duration latency;
+    private final int throttleEvery;
+    private final CosmosContainer container = mock(CosmosContainer.class);
+
+    InMemoryProductStore(Duration latency, int throttleEvery) {
+        this.latency = latency;
+        this.throttleEvery = throttleEvery;
+        when(container.executeBulkOperations(any())).thenAnswer(invocation -> execute(invocation.getArgument(0)));
+    }
+
+    CosmosContainer container() {
+        return container;
+    }
+
+    private List<CosmosBulkOperationResponse<Object>> execute(Iterable<CosmosItemOperation> operations)
+            throws InterruptedException {
+        int call = bulkCalls.incrementAndGet();
+        maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+        try {
+            TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+        } finally {
+            concurrentCalls.decrementAndGet();
+        }
+
+        List<CosmosItemOperation> batch = new ArrayList<>();
+        operations.forEach(batch::add);
+        boolean throttled = throttleEvery > 0 && call % throttleEvery == 0
+                && throttledOnce.add(batch.get(0).getId());
+        if (throttled) {
+            throttledCalls.incrementAndGet();
+        }
+
+        List<CosmosBulkOperationResponse<Object>> responses = new ArrayList<>(batch.size());
+        for (CosmosItemOperation operation : batch) {
+            CosmosBulkItemResponse item = mock(CosmosBulkItemResponse.class);
+            int status = throttled ? 429 : apply(operation);
+            when(item.getStatusCode()).thenReturn(status);
+            when(item.isSuccessStatusCode()).thenReturn(status < 300);
+            if (throttled) {
+                when(item.getRetryAfterDuration()).thenReturn(Duration.ofMillis(1));
+            } else if (status < 300) {
+                when(item.getItem(Product.class)).thenReturn(products.get(operation.getId()));
+            }
+            @SuppressWarnings("unchecked")
+            CosmosBulkOperationResponse<Object> response = mock(CosmosBulkOperationResponse.class);
+            when(response.getOperation()).thenReturn(operation);
+            when(response.getResponse()).thenReturn(item);
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private int apply(CosmosItemOperation operation) {
+        if (operation.getOperationType() == CosmosItemOperationType.PATCH) {
+            return products.containsKey(operation.getId()) ? 200 : 404;
+        }
+        Product product = operation.getItem();
+        return products.putIfAbsent(product.getId(), product) == null ? 201 : 409;
+    }
+}
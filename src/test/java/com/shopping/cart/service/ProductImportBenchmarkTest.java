@@ -0,0 +1,105 @@
+package com.shopping.cart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.ProductImportReport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ProductImportBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+    private static final int CATEGORIES = 20;
+    private static final int BATCH_SIZE = 100;
+    private static final Duration BULK_LATENCY = Duration.ofMillis(5);
+
+    private final ProductService productService = mock(ProductService.class);
+
+    @Test
+    void bulkCallsInFlightNeverExceedTheParallelism() throws IOException {
+        InMemoryProductStore serialStore = new InMemoryProductStore(BULK_LATENCY, 0);
+        ProductImportReport serial = importCatalog(serialStore, 1);
+        InMemoryProductStore parallelStore = new InMemoryProductStore(BULK_LATENCY, 0);
+        ProductImportReport parallel = importCatalog(parallelStore, 8);
+
+        assertEquals(ROWS, serial.getImported());
+        assertEquals(ROWS, parallel.getImported());
+        assertEquals(ROWS, parallelStore.products.size());
+        // Each category fills whole batches, so every batch is one bulk call
+        assertEquals(ROWS / BATCH_SIZE, serialStore.bulkCalls.get());
+        assertEquals(ROWS / BATCH_SIZE, parallelStore.bulkCalls.get());
+        assertEquals(1, serialStore.maxConcurrentCalls.get());
+        assertTrue(parallelStore.maxConcurrentCalls.get() <= 8,
+                parallelStore.maxConcurrentCalls.get() + " bulk calls in flight");
+    }
+
+    @Test
+    void throttledRowsAreRetriedUntilTheyLand() throws IOException {
+        InMemoryProductStore store = new InMemoryProductStore(BULK_LATENCY, 4);
+        ProductImportReport report = importCatalog(store, 8);
+
+        assertTrue(store.throttledCalls.get() > 0);
+        assertEquals(ROWS, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(ROWS, store.products.size());
+    }
+
+    @Test
+    void readModelsArePublishedOncePerBatch() throws IOException {
+        importCatalog(new InMemoryProductStore(BULK_LATENCY, 0), 8);
+
+        verify(productService, times(ROWS / BATCH_SIZE)).refreshAll(any());
+        verify(productService, never()).refresh(any());
+    }
+
+    @Test
+    void reimportKeepsTheStockOfExistingProducts() throws IOException {
+        InMemoryProductStore store = new InMemoryProductStore(BULK_LATENCY, 0);
+        Product held = new Product("p0", "category-0", "Product 0", null, 1.99, 3);
+        store.products.put(held.getId(), held);
+
+        ProductImportReport report = importCatalog(store, 8);
+
+        assertEquals(ROWS, report.getImported());
+        assertEquals(3, store.products.get("p0").getStockQuantity());
+        assertEquals(10, store.products.get("p1").getStockQuantity());
+    }
+
+    private ProductImportReport importCatalog(InMemoryProductStore store, int parallelism) throws IOException {
+        ExecutorService importExecutor = Executors.newFixedThreadPool(parallelism);
+        try {
+            ProductImportService importService = new ProductImportService(store.container(), productService,
+                    mock(CatalogVersion.class), new ObjectMapper(), importExecutor,
+                    new SimpleMeterRegistry(), BATCH_SIZE, parallelism);
+            return importService.importProducts(
+                    new ByteArrayInputStream(catalogCsv().getBytes(StandardCharsets.UTF_8)),
+                    ProductImportService.Format.CSV);
+        } finally {
+            importExecutor.shutdownNow();
+        }
+    }
+
+    private static String catalogCsv() {
+        StringBuilder csv = new StringBuilder("id,category,name,price,stockQuantity\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("p").append(i).append(",category-").append(i % CATEGORIES)
+                    .append(",Product ").append(i).append(',').append(i % 50 + 1).append(".99,10\n");
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+
+    @Test
+    void rebuildFromPagesReplacesStateOnlyWhenFinished() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p1", "Red kettle")));
+        index.finishRebuild();
+
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p2", "Blue kettle")));
+        assertEquals(List.of("p1"), ids(index.search("kettle", 10)));
+
+        index.rebuildPage(List.of(product("p3", "Green kettle")));
+        index.finishRebuild();
+        assertEquals(List.of("p2", "p3"), ids(index.search("kettle", 10)));
+    }
+
+    @Test
+    void abortedRebuildKeepsCurrentState() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        assertFalse(index.isReady());
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p1", "Red kettle")));
+        index.finishRebuild();
+
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p2", "Blue kettle")));
+        index.abortRebuild();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of("p1"), ids(index.search("ket", 10)));
+    }
+
+    @Test
+    void productsMissingFromTheScanAreDropped() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p1", "Red kettle"), product("p2", "Blue kettle")));
+        index.finishRebuild();
+
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p1", "Red kettle")));
+        index.finishRebuild();
+
+        assertEquals(List.of("p1"), ids(index.search("kettle", 10)));
+    }
+
+    @Test
+    void aShortPrefixOverALargeCatalogReturnsTheFirstNamesInOrder() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.beginRebuild();
+        List<Product> page = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            // Each product has two tokens under the prefix, so it is offered twice
+            page.add(product("p" + i, String.format("Kettle k%05d", 49_999 - i)));
+        }
+        index.rebuildPage(page);
+        index.finishRebuild();
+
+        assertEquals(List.of("p49999", "p49998", "p49997"), ids(index.search("k", 3)));
+    }
+
+    @Test
+    void exactTermsAndATrailingPrefixMustAllMatch() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.beginRebuild();
+        index.rebuildPage(List.of(product("p1", "Red kettle"), product("p2", "Red kitchen scale"),
+                product("p3", "Blue kettle"), product("p4", "Red teapot")));
+        index.finishRebuild();
+
+        assertEquals(List.of("p1", "p2"), ids(index.search("red k", 10)));
+        assertEquals(List.of("p1"), ids(index.search("red kettle ", 10)));
+        assertEquals(List.of(), ids(index.search("blue t", 10)));
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    private static Product product(String id, String name) {
+        return new Product(id, "kitchen", name, null, 10.0, 5);
+    }
+}
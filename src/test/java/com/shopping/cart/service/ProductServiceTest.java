@@ -0,0 +1,30 @@
+package com.shopping.cart.service;
+
+import com.shopping.cart.model.Product;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductServiceTest {
+
+    @Test
+    void aSaleThatLeavesStockDoesNotChangeListings() {
+        assertFalse(ProductService.changesListings(product(10.0, 5), product(10.0, 4)));
+    }
+
+    @Test
+    void sellingOutOrRestockingChangesListings() {
+        assertTrue(ProductService.changesListings(product(10.0, 1), product(10.0, 0)));
+        assertTrue(ProductService.changesListings(product(10.0, 0), product(10.0, 3)));
+    }
+
+    @Test
+    void aDetailsChangeChangesListings() {
+        assertTrue(ProductService.changesListings(product(10.0, 5), product(12.0, 5)));
+    }
+
+    private static Product product(double price, int stock) {
+        return new Product("p1", "books", "Product p1", null, price, stock);
+    }
+}
@@ -0,0 +1,122 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosException;
+import com.azure.spring.data.cosmos.core.CosmosTemplate;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.model.StockShard;
+import com.shopping.cart.repository.ProductRepository;
+import com.shopping.cart.repository.StockShardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShardedStockCounterTest {
+
+    private final StockShardRepository shardRepository = mock(StockShardRepository.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final CosmosTemplate cosmosTemplate = mock(CosmosTemplate.class);
+    private final ShardedStockCounter counter = new ShardedStockCounter(
+            shardRepository, productRepository, cosmosTemplate, null, new SimpleMeterRegistry());
+
+    @Test
+    void shardsAreFilledBeforeTheStockIsHandedOver() {
+        Product product = product(10, null);
+        Product sharded = product(0, 3);
+        when(productRepository.save(eq("p1"), any(), eq(Product.class), any(), any())).thenReturn(sharded);
+
+        assertEquals(sharded, counter.shard(product, 3));
+
+        var order = inOrder(cosmosTemplate, productRepository);
+        order.verify(cosmosTemplate).insert(eq(StockShard.CONTAINER_NAME), argThat(holding(0, 4)), any());
+        order.verify(cosmosTemplate).insert(eq(StockShard.CONTAINER_NAME), argThat(holding(1, 3)), any());
+        order.verify(cosmosTemplate).insert(eq(StockShard.CONTAINER_NAME), argThat(holding(2, 3)), any());
+        order.verify(productRepository).save(eq("p1"), any(), eq(Product.class), any(), any());
+        verify(shardRepository, never()).deleteById(any(), any());
+    }
+
+    @Test
+    void aFailedHandOverDeletesTheShards() {
+        Product product = product(10, null);
+        CosmosException changed = mock(CosmosException.class);
+        when(changed.getStatusCode()).thenReturn(CosmosErrors.PRECONDITION_FAILED);
+        when(productRepository.save(eq("p1"), any(), eq(Product.class), any(), any())).thenThrow(changed);
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class, () -> counter.shard(product, 3));
+
+        assertEquals(HttpStatus.CONFLICT, error.getStatusCode());
+        verify(shardRepository).deleteById(eq(StockShard.idFor("p1", 0)), any());
+        verify(shardRepository).deleteById(eq(StockShard.idFor("p1", 1)), any());
+        verify(shardRepository).deleteById(eq(StockShard.idFor("p1", 2)), any());
+    }
+
+    @Test
+    void aHandOverWithAnUnknownOutcomeKeepsTheShards() {
+        Product product = product(10, null);
+        IllegalStateException reset = new IllegalStateException("connection reset");
+        when(productRepository.save(eq("p1"), any(), eq(Product.class), any(), any())).thenThrow(reset);
+
+        assertEquals(reset, assertThrows(IllegalStateException.class, () -> counter.shard(product, 3)));
+        verify(shardRepository, never()).deleteById(any(), any());
+    }
+
+    @Test
+    void anExistingShardFailsTheCallAndIsLeftAlone() {
+        Product product = product(10, null);
+        CosmosException exists = mock(CosmosException.class);
+        when(exists.getStatusCode()).thenReturn(CosmosErrors.CONFLICT);
+        when(cosmosTemplate.insert(eq(StockShard.CONTAINER_NAME), argThat(holding(1, 3)), any())).thenThrow(exists);
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class, () -> counter.shard(product, 3));
+
+        assertEquals(HttpStatus.CONFLICT, error.getStatusCode());
+        verify(shardRepository).deleteById(eq(StockShard.idFor("p1", 0)), any());
+        verify(shardRepository, never()).deleteById(eq(StockShard.idFor("p1", 1)), any());
+        verify(shardRepository, never()).save(any());
+        verify(productRepository, never()).save(eq("p1"), any(), eq(Product.class), any(), any());
+    }
+
+    @Test
+    void unitsTakenForAFailedReservationAreAddedBackAfterAThrottledAdd() {
+        Product product = product(0, 2);
+        when(shardRepository.findAllById(any())).thenReturn(List.of(
+                new StockShard("p1", 0, 2), new StockShard("p1", 1, 1)));
+        CosmosException drained = mock(CosmosException.class);
+        when(drained.getStatusCode()).thenReturn(CosmosErrors.PRECONDITION_FAILED);
+        when(shardRepository.save(eq(StockShard.idFor("p1", 1)), any(), eq(StockShard.class), any(), any()))
+                .thenThrow(drained);
+        CosmosException throttled = mock(CosmosException.class);
+        when(throttled.getStatusCode()).thenReturn(CosmosErrors.TOO_MANY_REQUESTS);
+        when(shardRepository.save(eq(StockShard.idFor("p1", 0)), any(), eq(StockShard.class), any()))
+                .thenThrow(throttled)
+                .thenReturn(new StockShard("p1", 0, 2));
+
+        assertFalse(counter.takeAcrossShards(product, 3));
+        verify(shardRepository, times(2)).save(eq(StockShard.idFor("p1", 0)), any(), eq(StockShard.class), any());
+    }
+
+    private static org.mockito.ArgumentMatcher<StockShard> holding(int shard, int quantity) {
+        return filled -> filled.getShard() == shard && filled.getQuantity() == quantity;
+    }
+
+    private static Product product(int stock, Integer shards) {
+        Product product = new Product("p1", "games", "Console", null, 499.0, stock);
+        product.setStockShards(shards);
+        return product;
+    }
+}
@@ -0,0 +1,136 @@
+package com.shopping.cart.service;
+
+import com.azure.cosmos.CosmosException;
+import com.shopping.cart.model.Product;
+import com.shopping.cart.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Many buyers competing for a small stock while admission is reconciled in the
+ * background, as it is on the scheduling pool.
+ */
+class StockAdmissionFlashSaleTest {
+
+    private static final int THREADS = 64;
+    private static final int REQUESTS_PER_THREAD = 50;
+    private static final int STOCK = 100;
+    private static final Duration STORE_LATENCY = Duration.ofNanos(500_000);
+    private static final long RECONCILE_INTERVAL_MILLIS = 5;
+
+    private final AtomicInteger stock = new AtomicInteger(STOCK);
+    private final AtomicInteger storeWrites = new AtomicInteger();
+    private final AtomicInteger storeRejections = new AtomicInteger();
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final StockAdmissionController admission = new StockAdmissionController(
+            productRepository, null, new SimpleMeterRegistry(), 1000, 60);
+    private final InventoryService inventory;
+
+    StockAdmissionFlashSaleTest() {
+        CosmosException preconditionFailed = mock(CosmosException.class);
+        when(preconditionFailed.getStatusCode()).thenReturn(CosmosErrors.PRECONDITION_FAILED);
+        // Every buyer takes one unit, so the conditional patch is "decrement if any are left"
+        when(productRepository.save(eq("p1"), any(), eq(Product.class), any(), any())).thenAnswer(invocation -> {
+            pause();
+            storeWrites.incrementAndGet();
+            if (stock.getAndUpdate(left -> left > 0 ? left - 1 : left) == 0) {
+                storeRejections.incrementAndGet();
+                throw preconditionFailed;
+            }
+            return stored();
+        });
+        when(productRepository.findById(eq("p1"), any())).thenAnswer(invocation -> {
+            pause();
+            return Optional.of(stored());
+        });
+        when(productService.getCurrentProduct("p1", "sale")).thenAnswer(invocation -> Optional.of(stored()));
+
+        @SuppressWarnings("unchecked")
+        ObjectProvider<StockAdmissionController> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(admission);
+        inventory = new InventoryService(productRepository, productService, null, provider,
+                new SimpleMeterRegistry(), true, 900);
+    }
+
+    @Test
+    void aSoldOutProductStopsReachingTheStore() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(admission::reconcile, 0, RECONCILE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            int sold = buy(THREADS, REQUESTS_PER_THREAD);
+
+            assertEquals(STOCK, sold, "every unit should be sold exactly once");
+            assertEquals(0, stock.get());
+            // Only buyers already in flight when the stock ran out, plus those admitted on one
+            // reconcile that read the stock just before it did, can still reach the store
+            assertTrue(storeRejections.get() <= THREADS + STOCK,
+                    "store rejections: " + storeRejections.get());
+            assertTrue(storeWrites.get() < THREADS * REQUESTS_PER_THREAD / 4,
+                    "store writes: " + storeWrites.get());
+
+            stock.addAndGet(10);
+            Thread.sleep(RECONCILE_INTERVAL_MILLIS * 10);
+            assertEquals(10, buy(THREADS, REQUESTS_PER_THREAD), "a restock should be picked up on reconcile");
+            assertEquals(0, stock.get());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private int buy(int threads, int requestsPerThread) throws Exception {
+        Product product = stored();
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < requestsPerThread; i++) {
+                    try {
+                        inventory.reserve(product, 1);
+                        sold.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        // sold out
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        return sold.get();
+    }
+
+    private Product stored() {
+        return new Product("p1", "sale", "Limited edition", "", 10.0, stock.get());
+    }
+
+    private static void pause() throws InterruptedException {
+        Thread.sleep(0, STORE_LATENCY.getNano());
+    }
+}